@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/**
+ * AStar – weighted A* on the packed grid.
+ *
+ * Works alongside PathFind's BFS: instead of counting steps it adds up the
+ * TerrainCost of each tile entered, so a path that goes around the river can
+ * beat one that swims through it when the swimmer is slowed. The heuristic
+ * is pluggable; Heuristic.MANHATTAN suits the 4-connected grid.
+ *
+ * Like PathFind, an AStar is a reusable context for one Grid: the cost,
+ * parent and heap arrays are allocated once and generation-stamped, so a
+ * search allocates nothing. They are TileInts, so on a large grid only the
+ * chunks a search has been through take heap, and there a search gives up
+ * after Grid.LARGE_SEARCH tiles. Not thread-safe; Grid.aStar() gives one per
+ * grid.
+ */
+public class AStar {
+    private final Grid g;
+    private final TileInts cost;    // best known cost from start
+    private final TileInts parent;
+    private final TileInts seen;    // seen.get(i) == gen: cost/parent valid for this search
+    private final TileInts closed;  // closed.get(i) == gen: expanded
+    private final TileInts f;       // cost + heuristic, the heap key
+    private final TileInts heapPos; // position of a tile in heap, valid while seen and not closed
+    private int[] heap;             // binary min-heap of tile indices keyed by f (ties: larger cost first)
+    private final int limit;        // tiles a search may expand
+    private int heapSize;
+    private int gen = 0;
+
+    public AStar(Grid g) {
+        this.g = g;
+        cost = new TileInts(g, 0); parent = new TileInts(g, 0); seen = new TileInts(g, 0); closed = new TileInts(g, 0);
+        f = new TileInts(g, 0); heapPos = new TileInts(g, 0);
+        heap = new int[g.isLarge() ? 1024 : g.size()];
+        limit = g.isLarge() ? Grid.LARGE_SEARCH : g.size();
+    }
+
+    /**
+     * First tile on a cheapest path from start to goal, or start if the goal
+     * cannot be reached (or start == goal).
+     */
+    public int nextStep(int start, int goal, TerrainCost tc, Heuristic h) {
+        if (start == goal || !search(start, goal, tc, h)) return start;
+        int step = goal;
+        while (parent.get(step) != start) step = parent.get(step);
+        return step;
+    }
+
+    /** Every tile of a cheapest path, start and goal included, or null if the goal cannot be reached. */
+    public int[] path(int start, int goal, TerrainCost tc, Heuristic h) {
+        if (start == goal) return new int[]{ start };
+        if (!search(start, goal, tc, h)) return null;
+        int n = 1;
+        for (int t = goal; t != start; t = parent.get(t)) n++;
+        int[] path = new int[n];
+        for (int t = goal; n > 0; t = parent.get(t)) path[--n] = t;
+        return path;
+    }
+
+    // leaves the cheapest path in parent, from goal back to start; false if there is none
+    private boolean search(int start, int goal, TerrainCost tc, Heuristic h) {
+        if (++gen == Integer.MAX_VALUE) { seen.reset(); closed.reset(); gen = 1; }
+
+        final int cols = g.cols, rows = g.rows;
+        final int gc = g.colOf(goal), gr = g.rowOf(goal);
+        heapSize = 0;
+        seen.set(start, gen);
+        cost.set(start, 0);
+        parent.set(start, -1);
+        f.set(start, h.estimate(g.colOf(start) - gc, g.rowOf(start) - gr));
+        push(start);
+
+        for (int expanded = 0; heapSize > 0 && expanded < limit; expanded++) {
+            int cur = pop();
+            closed.set(cur, gen);
+            if (cur == goal) return true;
+            int c = g.colOf(cur), r = g.rowOf(cur);
+            if (c + 1 < cols) relax(cur, cur + 1, c + 1 - gc, r - gr, tc, h);
+            if (c > 0)        relax(cur, cur - 1, c - 1 - gc, r - gr, tc, h);
+            if (r + 1 < rows) relax(cur, cur + cols, c - gc, r + 1 - gr, tc, h);
+            if (r > 0)        relax(cur, cur - cols, c - gc, r - 1 - gr, tc, h);
+        }
+        return false;
+    }
+
+    private void relax(int cur, int nb, int dc, int dr, TerrainCost tc, Heuristic h) {
+        if (closed.get(nb) == gen) return;
+        int step = tc.enter(g, nb);
+        if (step == TerrainCost.BLOCKED) return;
+        int nc = cost.get(cur) + step;
+        if (seen.get(nb) == gen) {
+            if (nc >= cost.get(nb)) return;
+            cost.set(nb, nc);
+            parent.set(nb, cur);
+            f.set(nb, nc + h.estimate(dc, dr));
+            siftUp(heapPos.get(nb));
+        } else {
+            seen.set(nb, gen);
+            cost.set(nb, nc);
+            parent.set(nb, cur);
+            f.set(nb, nc + h.estimate(dc, dr));
+            push(nb);
+        }
+    }
+
+    // --- indexed binary heap ---
+
+    private boolean less(int a, int b) {
+        return f.get(a) < f.get(b) || (f.get(a) == f.get(b) && cost.get(a) > cost.get(b));
+    }
+
+    private void push(int i) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        heap[heapSize] = i;
+        heapPos.set(i, heapSize);
+        siftUp(heapSize++);
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapPos.set(last, 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int pos) {
+        int i = heap[pos];
+        while (pos > 0) {
+            int up = (pos - 1) >> 1;
+            if (!less(i, heap[up])) break;
+            heap[pos] = heap[up];
+            heapPos.set(heap[pos], pos);
+            pos = up;
+        }
+        heap[pos] = i;
+        heapPos.set(i, pos);
+    }
+
+    private void siftDown(int pos) {
+        int i = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) child++;
+            if (!less(heap[child], i)) break;
+            heap[pos] = heap[child];
+            heapPos.set(heap[pos], pos);
+            pos = child;
+        }
+        heap[pos] = i;
+        heapPos.set(i, pos);
+    }
+}
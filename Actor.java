@@ -3,27 +3,49 @@ import java.awt.*;
 public abstract class Actor {
     protected Color color = Color.BLACK;
     protected Cell loc;
+    protected Cell prevLoc;      // where the actor stood when the current tick began (for smooth drawing)
+    protected int prevLook;      // look() when the current tick began, to spot sprite changes
 
     protected int bites = 0;     // 0 normal, 1 slowed, 2 dead
+    public static final int ALIVE = 0, SLOWED = 1, DEAD = 2; // sprite states
     protected boolean alive = true;
 
+    Occupancy occupancy;         // the Stage's tile index, once the actor is on a Stage
+    Actor nextOnTile;            // next actor on the same tile (Occupancy's list)
+
     public Cell location() { return loc; }
+    public Cell previousLocation() { return prevLoc != null ? prevLoc : loc; }
     public boolean isAlive() { return alive; }
     public int biteCount() { return bites; }
     public void bitten() { if (alive && ++bites >= 2) alive = false; }
     public int swimDelayTicks() { return (bites >= 1) ? 1 : 0; }
+    public int spriteState() { return !alive ? DEAD : bites >= 1 ? SLOWED : ALIVE; }
+    public boolean isVisible() { return true; }
+    /** What the actor's sprite shows: its spriteState, or -1 while it is invisible. */
+    public int look() { return isVisible() ? spriteState() : -1; }
 
     protected void stepTo(Grid grid, Cell next) {
         if (next == null) return;
         if (grid.isBlockedFor(this, next)) return;
+        moveTo(next);
+    }
+
+    /** Put the actor on `next` unconditionally, keeping the Stage's Occupancy index in step. */
+    protected void moveTo(Cell next) {
+        if (occupancy != null) occupancy.move(this, loc, next);
         loc = next;
     }
 
-    // default icon
+    /** Draw at the actor's own tile (StageRenderer uses cached sprites from SpriteAtlas instead). */
     public void paint(Graphics g) {
+        if (isVisible()) paintAt(g, loc.x, loc.y);
+    }
+
+    // default icon, drawn with (x, y) as the tile's top-left corner
+    public void paintAt(Graphics g, int x, int y) {
         g.setColor(alive ? color : Color.GRAY);
-        g.fillOval(loc.x + 6, loc.y + 6, Cell.SIZE - 12, Cell.SIZE - 12);
+        g.fillOval(x + 6, y + 6, Cell.SIZE - 12, Cell.SIZE - 12);
         g.setColor(Color.BLACK);
-        g.drawOval(loc.x + 6, loc.y + 6, Cell.SIZE - 12, Cell.SIZE - 12);
+        g.drawOval(x + 6, y + 6, Cell.SIZE - 12, Cell.SIZE - 12);
     }
 }
\ No newline at end of file
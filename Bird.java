@@ -1,11 +1,8 @@
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
 
 public class Bird extends Actor implements Updatable, Swimmable, Predator {
-    private final Random rng = new Random();
+    private static final Color BODY = new Color(186, 85, 211), FIN = new Color(140, 60, 170);
 
     // behaviour knobs (unchanged)
     private int alertRange = 5;
@@ -17,16 +14,16 @@ public class Bird extends Actor implements Updatable, Swimmable, Predator {
 
     // dynamic state
     private boolean hidden = true;
-    private int stateTimer;
+    private int stateTimer = -1; // -1 until the first update draws it
     private int cooldown = 0;
     private int stepClock = 0;
     private int roamEvery = 2;
     private Cell roamTarget = null;
+    private final java.util.List<Actor> prey = new java.util.ArrayList<>(2); // scratch: swimmers on our tile
 
     public Bird(Cell start) {
         this.loc = start;
         this.color = new Color(186, 85, 211); // keep the purple "predator" look
-        this.stateTimer = randBetween(hideMin, hideMax);
     }
 
     @Override public void hunt(Stage s) { }
@@ -35,6 +32,7 @@ public class Bird extends Actor implements Updatable, Swimmable, Predator {
     @Override
     public void update(Stage s) {
         if (!alive || s.gameOver) return;
+        if (stateTimer < 0) stateTimer = randBetween(s, hideMin, hideMax);
 
         if (cooldown > 0) { cooldown--; return; }
 
@@ -43,15 +41,15 @@ public class Bird extends Actor implements Updatable, Swimmable, Predator {
             Actor swimmer = nearestSwimmer(s);
             if (swimmer != null) {
                 hidden = false;
-                stateTimer = randBetween(visibleMin, visibleMax);
+                stateTimer = randBetween(s, visibleMin, visibleMax);
             } else if (--stateTimer <= 0) {
-                stateTimer = randBetween(hideMin, hideMax);
+                stateTimer = randBetween(s, hideMin, hideMax);
             }
             return;
         } else {
             if (--stateTimer <= 0) {
                 hidden = true;
-                stateTimer = randBetween(hideMin, hideMax);
+                stateTimer = randBetween(s, hideMin, hideMax);
                 return;
             }
         }
@@ -61,83 +59,79 @@ public class Bird extends Actor implements Updatable, Swimmable, Predator {
 
         Actor swimmer = nearestSwimmer(s);
         if (swimmer != null) {
-            for (int i = 0; i < speedSteps; i++) {
-                if (loc == swimmer.location()) break;
-                Cell next = PathFind.nextStepBFS(s.grid, this, loc, swimmer.location());
-                if (next instanceof RiverCell) stepTo(s.grid, next);
-            }
+            swimToward(s, swimmer.location(), speedSteps);
         } else {
-            if (roamTarget == null || roamTarget == loc || !(roamTarget instanceof RiverCell)) {
+            if (roamTarget == null || roamTarget == loc || !s.grid.isRiver(roamTarget)) {
                 roamTarget = randomRiverCell(s);
             }
-            if (roamTarget != null) {
-                for (int i = 0; i < roamSteps; i++) {
-                    if (loc == roamTarget) break;
-                    Cell next = PathFind.nextStepBFS(s.grid, this, loc, roamTarget);
-                    if (next instanceof RiverCell) stepTo(s.grid, next);
-                }
-            }
+            if (roamTarget != null) swimToward(s, roamTarget, roamSteps);
         }
 
-        biteIfSameRiverCell(s, s.cat);
-        biteIfSameRiverCell(s, s.dog);
+        if (!s.grid.isRiver(loc)) return;
+        prey.clear();
+        s.occupancy.within(loc, 0, a -> isPrey(s.grid, a), prey); // bitten swimmers are pushed ashore, so collect first
+        for (Actor a : prey) biteIfSameRiverCell(s, a);
+    }
+
+    // live swimmers in the river (the Cat and the Dog, not other birds)
+    private static boolean isPrey(Grid g, Actor a) {
+        return a instanceof Swimmable && !(a instanceof Bird) && a.isAlive() && g.isRiver(a.location());
     }
 
     private Actor nearestSwimmer(Stage s) {
-        Actor best = null; int bestD = Integer.MAX_VALUE;
-        if (s.cat.isAlive() && s.cat.location() instanceof RiverCell) {
-            int d = s.grid.manhattan(loc, s.cat.location());
-            if (d <= alertRange && d < bestD) { bestD = d; best = s.cat; }
-        }
-        if (s.dog.isAlive() && s.dog.location() instanceof RiverCell) {
-            int d = s.grid.manhattan(loc, s.dog.location());
-            if (d <= alertRange && d < bestD) { bestD = d; best = s.dog; }
+        return s.occupancy.nearest(loc, alertRange, a -> isPrey(s.grid, a));
+    }
+
+    /** Follow the precomputed river next-hop table for up to `steps` tiles. */
+    private void swimToward(Stage s, Cell target, int steps) {
+        RiverRoutes routes = s.grid.riverRoutes();
+        int goal = s.grid.index(target);
+        for (int i = 0; i < steps; i++) {
+            if (loc == target) break;
+            int hop = routes.nextHop(s.grid.index(loc), goal);
+            if (hop < 0) break;
+            stepTo(s.grid, s.grid.cellAt(hop));
         }
-        return best;
     }
 
     private Cell randomRiverCell(Stage s) {
-        List<Cell> river = new ArrayList<>();
-        for (int c = 0; c < Grid.COLS; c++)
-            for (int r = 0; r < Grid.ROWS; r++)
-                if (s.grid.cells[c][r] instanceof RiverCell) river.add(s.grid.cells[c][r]);
-        return river.isEmpty() ? null : river.get(rng.nextInt(river.size()));
+        int i = s.grid.riverRoutes().randomTile(s.rng, s.grid.index(loc));
+        return i < 0 ? null : s.grid.cellAt(i);
     }
 
     private void biteIfSameRiverCell(Stage s, Actor a) {
         if (!a.isAlive()) return;
-        if (this.loc == a.location() && (a.location() instanceof RiverCell)) {
+        if (this.loc == a.location() && s.grid.isRiver(a.location())) {
             a.bitten();
             cooldown = biteCooldownTicks;
             hidden = true;
-            stateTimer = randBetween(hideMin, hideMax);
+            stateTimer = randBetween(s, hideMin, hideMax);
             for (Cell nb : s.grid.neighbors(a.location())) {
-                if (!(nb instanceof RiverCell) && !s.grid.isBlockedFor(a, nb)) { a.loc = nb; break; }
+                if (!s.grid.isRiver(nb) && !s.grid.isBlockedFor(a, nb)) { a.moveTo(nb); break; }
             }
-            if (!a.isAlive() && a == s.cat && !s.gameOver) {
-                s.gameOver = true;
-                s.gameMessage = "Bird (river ambusher) wins! Cat eaten twice.";
+            if (!a.isAlive() && a instanceof Prey && !s.gameOver) {
+                s.endGame(Stage.Outcome.BIRD_KILL, "Bird (river ambusher) wins! Cat eaten twice.");
             }
         }
     }
 
-    private int randBetween(int lo, int hi) {
-        return lo + rng.nextInt(Math.max(1, hi - lo + 1));
+    private static int randBetween(Stage s, int lo, int hi) {
+        return lo + s.rng.nextInt(Math.max(1, hi - lo + 1));
     }
 
+    @Override public boolean isVisible() { return !hidden; } // invisible while hidden
+
     @Override
-    public void paint(Graphics g) {
-        if (hidden) return; // invisible while hidden
-
-        g.setColor(alive ? new Color(186,85,211) : Color.GRAY);
-        g.fillOval(loc.x + 5, loc.y + 10, Cell.SIZE - 10, Cell.SIZE - 20);
-        g.setColor(new Color(140, 60, 170));
-        int[] tx = { loc.x + 8, loc.x + 2, loc.x + 8 };
-        int[] ty = { loc.y + 12, loc.y + Cell.SIZE/2, loc.y + Cell.SIZE - 12 };
+    public void paintAt(Graphics g, int x, int y) {
+        g.setColor(alive ? BODY : Color.GRAY);
+        g.fillOval(x + 5, y + 10, Cell.SIZE - 10, Cell.SIZE - 20);
+        g.setColor(FIN);
+        int[] tx = { x + 8, x + 2, x + 8 };
+        int[] ty = { y + 12, y + Cell.SIZE/2, y + Cell.SIZE - 12 };
         g.fillPolygon(tx, ty, 3); // tail/fin
         g.setColor(Color.WHITE);
-        g.fillOval(loc.x + Cell.SIZE - 18, loc.y + Cell.SIZE/2 - 4, 8, 8);
+        g.fillOval(x + Cell.SIZE - 18, y + Cell.SIZE/2 - 4, 8, 8);
         g.setColor(Color.BLACK);
-        g.fillOval(loc.x + Cell.SIZE - 15, loc.y + Cell.SIZE/2 - 1, 3, 3);
+        g.fillOval(x + Cell.SIZE - 15, y + Cell.SIZE/2 - 1, 3, 3);
     }
 }
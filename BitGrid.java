@@ -0,0 +1,250 @@
+import java.util.Arrays;
+
+/**
+ * BitGrid – one bit per tile, stored as long[] row bitsets.
+ *
+ * Each row takes `words` longs (bit c & 63 of word c >>> 6 is column c), and
+ * bits past the last column are always zero. Grid.passBits(mask) hands out one
+ * board per passability mask; reach() and distances() then answer all-cells
+ * questions ("which tiles can the Cat get to?", "how far is every tile from
+ * the Dog?") with shift/AND/OR on whole words, 64 tiles at a time, instead of
+ * visiting tiles one by one.
+ *
+ * The flood scratch arrays belong to the board, so a board is not
+ * thread-safe; each match runs on a single thread.
+ */
+public class BitGrid {
+    public final int cols, rows, words;
+    final long[] bits;
+
+    private long[] front, next, seen;               // scratch for distances()
+    private int[] frontLo, frontHi, nextLo, nextHi; // word range each ring covers per row
+
+    public BitGrid(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.words = (cols + 63) >>> 6;
+        this.bits = new long[rows * words];
+    }
+
+    /** Board with a bit set on every tile of g passable under mask. */
+    public static BitGrid passable(Grid g, int mask) {
+        BitGrid b = new BitGrid(g.cols, g.rows);
+        for (int i = 0, n = g.size(); i < n; i++) if (g.passable(i, mask)) b.set(i);
+        return b;
+    }
+
+    /** Board over the cols x rows window of g whose top-left tile is (col0, row0): a bit per tile passable under mask. */
+    public static BitGrid passable(Grid g, int mask, int col0, int row0, int cols, int rows) {
+        BitGrid b = new BitGrid(cols, rows);
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++) if (g.passable(g.index(col0 + c, row0 + r), mask)) b.set(r * cols + c);
+        return b;
+    }
+
+    // --- single tiles (tile index = row * cols + col, as in Grid) ---
+
+    private int word(int idx) { return (idx / cols) * words + ((idx % cols) >>> 6); }
+
+    public boolean get(int idx) { return (bits[word(idx)] & (1L << (idx % cols))) != 0; }
+    public void set(int idx)    { bits[word(idx)] |= 1L << (idx % cols); }
+    public void clear(int idx)  { bits[word(idx)] &= ~(1L << (idx % cols)); }
+
+    public BitGrid copy() {
+        BitGrid b = new BitGrid(cols, rows);
+        System.arraycopy(bits, 0, b.bits, 0, bits.length);
+        return b;
+    }
+
+    public BitGrid or(BitGrid o)     { for (int i = 0; i < bits.length; i++) bits[i] |= o.bits[i];  return this; }
+    public BitGrid and(BitGrid o)    { for (int i = 0; i < bits.length; i++) bits[i] &= o.bits[i];  return this; }
+    public BitGrid andNot(BitGrid o) { for (int i = 0; i < bits.length; i++) bits[i] &= ~o.bits[i]; return this; }
+
+    public int count() {
+        int n = 0;
+        for (long w : bits) n += Long.bitCount(w);
+        return n;
+    }
+
+    /** Tile index of the k-th set bit (0-based, row-major), or -1 if there are not that many. */
+    public int nth(int k) {
+        for (int i = 0; i < bits.length; i++) {
+            long w = bits[i];
+            int c = Long.bitCount(w);
+            if (k >= c) { k -= c; continue; }
+            for (; k > 0; k--) w &= w - 1;
+            return tile(i, Long.numberOfTrailingZeros(w));
+        }
+        return -1;
+    }
+
+    /** Call f with the tile index of every set bit, in row-major order. */
+    public void forEach(java.util.function.IntConsumer f) {
+        for (int i = 0; i < bits.length; i++)
+            for (long w = bits[i]; w != 0; w &= w - 1) f.accept(tile(i, Long.numberOfTrailingZeros(w)));
+    }
+
+    private int tile(int word, int bit) { return (word / words) * cols + ((word % words) << 6) + bit; }
+
+    // --- floods ---
+
+    /**
+     * Every tile of this board reachable from src through 4-connected set bits
+     * (src included), or an empty board if src itself is not set. Rows are
+     * filled sideways a whole run at a time, then sweeps down and up push the
+     * fill into neighbouring rows until nothing changes.
+     */
+    public BitGrid reach(int src) {
+        BitGrid out = new BitGrid(cols, rows);
+        if (!get(src)) return out;
+        long[] r = out.bits;
+        r[word(src)] = 1L << (src % cols);
+        fillRow(r, src / cols);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int row = 1; row < rows; row++)     changed |= spread(r, row - 1, row);
+            for (int row = rows - 2; row >= 0; row--) changed |= spread(r, row + 1, row);
+        }
+        return out;
+    }
+
+    // seed row `to` from row `from`; if that adds anything, close the row sideways
+    private boolean spread(long[] r, int from, int to) {
+        int f = from * words, t = to * words;
+        boolean grew = false;
+        for (int w = 0; w < words; w++) {
+            long add = r[f + w] & bits[t + w] & ~r[t + w];
+            if (add != 0) { r[t + w] |= add; grew = true; }
+        }
+        if (grew) fillRow(r, to);
+        return grew;
+    }
+
+    // extend every set bit of row `row` in r along its run of passable bits, across word borders
+    private void fillRow(long[] r, int row) {
+        int base = row * words;
+        long carry = 0;
+        for (int w = 0; w < words; w++) {
+            long p = bits[base + w];
+            long g = (r[base + w] | carry) & p;
+            g = fillUp(g, p);
+            r[base + w] = g;
+            carry = g >>> 63;
+        }
+        carry = 0;
+        for (int w = words - 1; w >= 0; w--) {
+            long p = bits[base + w];
+            long g = (r[base + w] | carry) & p;
+            g = fillDown(g, p);
+            r[base + w] = g;
+            carry = (g & 1L) << 63;
+        }
+    }
+
+    // occluded fills: spread g through the runs of p toward higher / lower bits
+    private static long fillUp(long g, long p) {
+        g |= p & (g << 1);  p &= p << 1;
+        g |= p & (g << 2);  p &= p << 2;
+        g |= p & (g << 4);  p &= p << 4;
+        g |= p & (g << 8);  p &= p << 8;
+        g |= p & (g << 16); p &= p << 16;
+        return g | (p & (g << 32));
+    }
+
+    private static long fillDown(long g, long p) {
+        g |= p & (g >>> 1);  p &= p >>> 1;
+        g |= p & (g >>> 2);  p &= p >>> 2;
+        g |= p & (g >>> 4);  p &= p >>> 4;
+        g |= p & (g >>> 8);  p &= p >>> 8;
+        g |= p & (g >>> 16); p &= p >>> 16;
+        return g | (p & (g >>> 32));
+    }
+
+    /**
+     * Step distance from src to every tile through set bits, written into dist
+     * (length cols * rows; -1 where unreachable). Each ring is one dilation of
+     * the previous ring, limited to the words the frontier covers in each row.
+     * Returns the largest distance, or -1 if src is not set.
+     *
+     * Reachability (reach) is where the word parallelism pays off most; a full
+     * distance field on a big open map costs about as much as a scalar BFS,
+     * since every ring touches a word in every row it spans. Pass a limit when
+     * only the nearby rings matter ("everything within 5 steps of the Dog").
+     */
+    public int distances(int src, int[] dist) {
+        return distances(src, dist, Integer.MAX_VALUE);
+    }
+
+    /** Like distances(src, dist) but stops after ring `limit`; tiles further out stay -1. */
+    public int distances(int src, int[] dist, int limit) {
+        Arrays.fill(dist, -1);
+        if (!get(src)) return -1;
+        if (front == null) {
+            front = new long[bits.length]; next = new long[bits.length]; seen = new long[bits.length];
+            frontLo = new int[rows]; frontHi = new int[rows]; nextLo = new int[rows]; nextHi = new int[rows];
+        } else {
+            Arrays.fill(front, 0); Arrays.fill(next, 0); Arrays.fill(seen, 0);
+        }
+        Arrays.fill(frontLo, words); Arrays.fill(frontHi, -1);
+        Arrays.fill(nextLo, words);  Arrays.fill(nextHi, -1);
+
+        int srcRow = src / cols, srcWord = (src % cols) >>> 6;
+        front[word(src)] = seen[word(src)] = 1L << (src % cols);
+        frontLo[srcRow] = frontHi[srcRow] = srcWord;
+        dist[src] = 0;
+        int lo = srcRow, hi = lo, d = 0;
+
+        while (lo <= hi && d < limit) {
+            d++;
+            int nlo = Math.max(0, lo - 1), nhi = Math.min(rows - 1, hi + 1);
+            int newLo = Integer.MAX_VALUE, newHi = -1;
+            for (int row = nlo; row <= nhi; row++) {
+                // words that can gain bits: the frontier's words in this row and the two beside it, one word wider
+                int wl = words, wh = -1;
+                for (int rr = Math.max(0, row - 1); rr <= Math.min(rows - 1, row + 1); rr++) {
+                    wl = Math.min(wl, frontLo[rr]);
+                    wh = Math.max(wh, frontHi[rr]);
+                }
+                if (wl > wh) continue;
+                wl = Math.max(0, wl - 1);
+                wh = Math.min(words - 1, wh + 1);
+
+                int base = row * words, ol = words, oh = -1;
+                for (int w = wl; w <= wh; w++) {
+                    int i = base + w;
+                    long f = front[i];
+                    long grow = (f << 1) | (f >>> 1);
+                    if (w > 0)             grow |= front[i - 1] >>> 63;
+                    if (w + 1 < words)     grow |= front[i + 1] << 63;
+                    if (row > 0)           grow |= front[i - words];
+                    if (row + 1 < rows)    grow |= front[i + words];
+                    long n = grow & bits[i] & ~seen[i];
+                    if (n == 0) continue;
+                    next[i] = n;
+                    seen[i] |= n;
+                    if (ol == words) ol = w;
+                    oh = w;
+                    int t0 = row * cols + (w << 6);
+                    for (long m = n; m != 0; m &= m - 1) dist[t0 + Long.numberOfTrailingZeros(m)] = d;
+                }
+                nextLo[row] = ol;
+                nextHi[row] = oh;
+                if (oh >= 0) { newLo = Math.min(newLo, row); newHi = row; }
+            }
+            // the old ring is dead: clear just its words, then swap so `front` is the new ring
+            for (int row = lo; row <= hi; row++) {
+                if (frontLo[row] <= frontHi[row]) Arrays.fill(front, row * words + frontLo[row], row * words + frontHi[row] + 1, 0);
+                frontLo[row] = words;
+                frontHi[row] = -1;
+            }
+            long[] t = front; front = next; next = t;
+            int[] tl = frontLo; frontLo = nextLo; nextLo = tl;
+            int[] th = frontHi; frontHi = nextHi; nextHi = th;
+            lo = newLo;
+            hi = newHi;
+        }
+        return lo <= hi ? d : d - 1;
+    }
+}
@@ -4,15 +4,13 @@
  * Week 5 base: simple drawable Actor (Cat) on a grid.
  * MOD from Week 5:
  *  - Player control via setDirection(dx, dy) when Cat is chosen.
- *  - AI when Dog is chosen: flee if Dog is close, else BFS to nearest coin; wander if no target.
+ *  - AI when Dog is chosen: flee if Dog is close, else follow the coin distance field; wander if no target.
  *  - Swim "viscosity" delay when entering river tiles.
  *  - Unstuck logic: if we fail to move for several ticks, pick a random reachable land cell and BFS to it.
  */
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Random;
 
 public class Cat extends Actor implements Updatable, Prey, Swimmable {
     // --- player control ---
@@ -20,7 +18,6 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
     public void setDirection(int dx, int dy) { moveDx = dx; moveDy = dy; }
 
     // --- AI knobs ---
-    private final Random rng = new Random();
     private int aiMoveDelay = 2;      // pacing for AI steps
     private int aiCooldown = 0;
     private int threatRange = 5;      // flee when Dog is this close
@@ -29,6 +26,7 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
     // --- unstuck detection ---
     private int stuckTicks = 0;
     private static final int MAX_STUCK = 6;
+    private Cell escape; // kept until reached, so an async route to it gets followed
 
     public Cat(Cell start) {
         this.loc = start;
@@ -57,7 +55,7 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
             if (s.dog.isAlive() && distDog <= threatRange) {
                 int bestD = distDog;
                 java.util.List<Cell> ns = s.grid.neighbors(loc);
-                Collections.shuffle(ns, rng);
+                Collections.shuffle(ns, s.rng);
                 for (Cell c : ns) {
                     if (s.grid.isBlockedFor(this, c)) continue;
                     int d = s.grid.manhattan(c, s.dog.location());
@@ -65,18 +63,16 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
                 }
             }
 
-            // 2) Seek nearest coin
+            // 2) Seek the nearest reachable coin (by path length)
             if (next == null) {
-                Cell targetCoin = nearestCoinCell(s);
-                if (targetCoin != null) {
-                    next = PathFind.nextStepBFS(s.grid, this, loc, targetCoin);
-                }
+                int step = s.coinField().nextStep(s.grid.index(loc));
+                if (step >= 0) next = s.grid.cellAt(step);
             }
 
             // 3) Wander if nothing else
             if (next == null) {
                 java.util.List<Cell> ns = s.grid.neighbors(loc);
-                Collections.shuffle(ns, rng);
+                Collections.shuffle(ns, s.rng);
                 for (Cell c : ns) {
                     if (!s.grid.isBlockedFor(this, c)) { next = c; break; }
                 }
@@ -84,7 +80,7 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
 
             // 4) Move (with river slowdown)
             if (next != null) {
-                if (next instanceof RiverCell) {
+                if (s.grid.isRiver(next)) {
                     int delay = swimDelayTicks();
                     swimTick = (swimTick + 1) % (delay + 1);
                     if (swimTick != 0) { aiCooldown = aiMoveDelay; return; }
@@ -99,12 +95,12 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
 
     /** Try to step by dx/dy respecting obstacles + river slowdown (player control path). */
     private void attemptStep(Stage s, int dx, int dy) {
-        int col = (loc.x - Grid.OFFSET) / Cell.SIZE + dx;
-        int row = (loc.y - Grid.OFFSET) / Cell.SIZE + dy;
-        if (col < 0 || col >= Grid.COLS || row < 0 || row >= Grid.ROWS) return;
+        int col = loc.col + dx;
+        int row = loc.row + dy;
+        if (!s.grid.inBounds(col, row)) return;
         Cell next = s.grid.cellAtColRow(col, row);
 
-        if (next instanceof RiverCell) {
+        if (s.grid.isRiver(next)) {
             int delay = swimDelayTicks();
             swimTick = (swimTick + 1) % (delay + 1);
             if (swimTick != 0) return;
@@ -114,22 +110,10 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
         postMoveUnstuckLogic(s, before);
 
         // If Dog catches Cat after we move
-        if (s.dog.isAlive() && s.dog.location() == loc) {
+        if (s.occupancy.find(s.grid.index(loc), a -> a instanceof Dog && a.isAlive()) != null) {
             alive = false;
-            s.gameOver = true;
-            s.gameMessage = "Dog wins! (caught the cat)";
-        }
-    }
-
-    /** Find the nearest coin by Manhattan distance. */
-    private Cell nearestCoinCell(Stage s) {
-        int bestD = Integer.MAX_VALUE;
-        Cell best = null;
-        for (Stage.Coin coin : s.coins) {
-            int d = s.grid.manhattan(loc, coin.at);
-            if (d < bestD) { bestD = d; best = coin.at; }
+            s.endGame(Stage.Outcome.DOG_CATCH, "Dog wins! (caught the cat)");
         }
-        return best;
     }
 
     /** If we didn't move for several ticks, pick a random reachable land target and BFS to it. */
@@ -137,9 +121,9 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
         if (loc == before) {
             stuckTicks++;
             if (stuckTicks >= MAX_STUCK) {
-                Cell escape = randomReachableLandCell(s);
+                if (escape == null || escape == loc) escape = s.randomReachableLand(this);
                 if (escape != null) {
-                    Cell step = PathFind.nextStepBFS(s.grid, this, loc, escape);
+                    Cell step = s.paths.nextStep(this, loc, escape);
                     if (step != null && step != loc && !s.grid.isBlockedFor(this, step)) {
                         stepTo(s.grid, step);
                     }
@@ -151,37 +135,24 @@ public class Cat extends Actor implements Updatable, Prey, Swimmable {
         }
     }
 
-    /** Pick a random land (non-river) cell that this actor can enter. */
-    private Cell randomReachableLandCell(Stage s) {
-        java.util.List<Cell> options = new ArrayList<>();
-        for (int c = 0; c < Grid.COLS; c++) {
-            for (int r = 0; r < Grid.ROWS; r++) {
-                Cell cell = s.grid.cells[c][r];
-                if (cell instanceof RiverCell) continue;
-                if (!s.grid.isBlockedFor(this, cell)) options.add(cell);
-            }
-        }
-        return options.isEmpty() ? null : options.get(rng.nextInt(options.size()));
-    }
-
     @Override
-    public void paint(Graphics g) {
+    public void paintAt(Graphics g, int x, int y) {
         // body
         g.setColor(alive ? color : Color.GRAY);
-        g.fillOval(loc.x + 3, loc.y + 3, loc.width - 6, loc.height - 6);
+        g.fillOval(x + 3, y + 3, Cell.SIZE - 6, Cell.SIZE - 6);
 
         // ears
         g.setColor(alive ? color.darker() : Color.GRAY);
-        g.fillOval(loc.x + 8, loc.y, 10, 10);
-        g.fillOval(loc.x + loc.width - 18, loc.y, 10, 10);
+        g.fillOval(x + 8, y, 10, 10);
+        g.fillOval(x + Cell.SIZE - 18, y, 10, 10);
 
         // eyes
         g.setColor(Color.WHITE);
-        g.fillOval(loc.x + 12, loc.y + 15, 5, 5);
-        g.fillOval(loc.x + loc.width - 17, loc.y + 15, 5, 5);
+        g.fillOval(x + 12, y + 15, 5, 5);
+        g.fillOval(x + Cell.SIZE - 17, y + 15, 5, 5);
         g.setColor(Color.BLACK);
-        g.fillOval(loc.x + 14, loc.y + 17, 2, 2);
-        g.fillOval(loc.x + loc.width - 15, loc.y + 17, 2, 2);
+        g.fillOval(x + 14, y + 17, 2, 2);
+        g.fillOval(x + Cell.SIZE - 15, y + 17, 2, 2);
     }
 
     @Override public void evade(Stage s) { }
@@ -2,13 +2,21 @@ import java.awt.*;
 
 public class Cell extends Rectangle {
     public static final int SIZE = 35;
+    static final Color LAND = new Color(255, 210, 225), EDGE = new Color(240, 170, 190);
 
-    public Cell(int x, int y) { super(x, y, SIZE, SIZE); }
+    // tile coordinates; x/y (from Rectangle) are the pixel position used for drawing
+    public final int col, row;
+
+    public Cell(int col, int row) {
+        super(Grid.OFFSET + col * SIZE, Grid.OFFSET + row * SIZE, SIZE, SIZE);
+        this.col = col;
+        this.row = row;
+    }
 
     void paint(Graphics g) {
-        g.setColor(new Color(255, 210, 225));  // base pink tile
+        g.setColor(LAND);  // base pink tile
         g.fillRect(x, y, SIZE, SIZE);
-        g.setColor(new Color(240, 170, 190));
+        g.setColor(EDGE);
         g.drawRect(x, y, SIZE, SIZE);
     }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CoinField – distance from every tile to the nearest reachable coin.
+ *
+ * One multi-source BFS seeded from every coin fills dist for a passability
+ * mask. Any actor with that mask can then step toward the truly nearest coin
+ * (by path, not Manhattan distance) by reading its four neighbours. A new
+ * coin is patched in with a BFS that only lowers distances. For a pickup,
+ * owner says which coin each tile's distance came from: only the tiles the
+ * picked-up coin owned are cleared, and they are re-flooded from the tiles
+ * around them (lowest distance first), so the cost is the size of that coin's
+ * area, not of the map. The cost per tick is therefore independent of how many
+ * actors are seeking coins.
+ *
+ * On a large grid (Grid.isLarge()) the field only reaches LARGE_RANGE steps
+ * out from each coin, and dist/owner are TileInts, so only the chunks around
+ * the coins take heap; an actor further out than that sees no coin.
+ */
+public class CoinField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    static final int LARGE_RANGE = 256;
+
+    private final Grid g;
+    private final int mask, range;
+    private final TileInts dist;
+    private final TileInts owner; // tile of the coin dist was measured to, -1 if none
+    private int[] queue;          // grows as needed: a flood seldom covers the whole grid
+    private long[] seeds = new long[64]; // re-flood starts after a pickup: dist << 32 | tile
+    private boolean stale = true;
+
+    public CoinField(Grid g, int mask) {
+        this.g = g;
+        this.mask = mask;
+        this.range = g.isLarge() ? LARGE_RANGE : UNREACHABLE - 1;
+        this.dist = new TileInts(g, UNREACHABLE);
+        this.owner = new TileInts(g, -1);
+        this.queue = new int[Math.min(g.size(), 1024)];
+    }
+
+    /** Build the field from the current coin list the first time it is read. */
+    public void update(List<Stage.Coin> coins) {
+        if (!stale) return;
+        dist.reset();
+        owner.reset();
+        int tail = 0;
+        for (Stage.Coin c : coins) {
+            int i = g.index(c.at);
+            if (dist.get(i) == 0) continue;
+            dist.set(i, 0);
+            owner.set(i, i);
+            tail = push(i, tail);
+        }
+        flood(tail, 0);
+        stale = false;
+    }
+
+    /** Patch in a newly spawned coin without a full rebuild. */
+    public void addCoin(Cell at) {
+        if (stale) return; // the first build will include it
+        int i = g.index(at);
+        if (dist.get(i) == 0) return;
+        dist.set(i, 0);
+        owner.set(i, i);
+        queue[0] = i;
+        flood(1, 0);
+    }
+
+    /** Take out a picked-up coin, re-flooding only the tiles that were nearest to it. */
+    public void removeCoin(Cell at) {
+        if (stale) return;
+        int i = g.index(at);
+        if (owner.get(i) != i) return;
+        // clear its area; every tile in it reaches i through tiles it also owns
+        int head = 0, tail = 0;
+        dist.set(i, UNREACHABLE);
+        owner.set(i, -1);
+        queue[tail++] = i;
+        while (head < tail) {
+            int cur = queue[head++], c = g.colOf(cur), r = g.rowOf(cur);
+            if (c + 1 < g.cols) tail = clear(cur + 1, i, tail);
+            if (c > 0)          tail = clear(cur - 1, i, tail);
+            if (r + 1 < g.rows) tail = clear(cur + g.cols, i, tail);
+            if (r > 0)          tail = clear(cur - g.cols, i, tail);
+        }
+        // the tiles bordering it keep their distances and flood back in
+        int n = 0;
+        for (int k = 0; k < tail; k++) {
+            int cur = queue[k], c = g.colOf(cur), r = g.rowOf(cur);
+            if (c + 1 < g.cols) n = seed(cur + 1, n);
+            if (c > 0)          n = seed(cur - 1, n);
+            if (r + 1 < g.rows) n = seed(cur + g.cols, n);
+            if (r > 0)          n = seed(cur - g.cols, n);
+        }
+        Arrays.sort(seeds, 0, n);
+        flood(0, n);
+    }
+
+    private int clear(int nb, int coin, int tail) {
+        if (owner.get(nb) != coin) return tail;
+        dist.set(nb, UNREACHABLE);
+        owner.set(nb, -1);
+        return push(nb, tail);
+    }
+
+    private int seed(int nb, int n) {
+        int d = dist.get(nb);
+        if (d == UNREACHABLE) return n;
+        if (n == seeds.length) seeds = Arrays.copyOf(seeds, n * 2);
+        seeds[n++] = (long) d << 32 | nb;
+        return n;
+    }
+
+    // BFS outward from the first `tail` queued tiles and the first n seeds
+    // (sorted), taking whichever is nearer next; only ever lowers distances
+    private void flood(int tail, int n) {
+        int head = 0, k = 0;
+        while (head < tail || k < n) {
+            int cur = k == n || (head < tail && dist.get(queue[head]) <= (int) (seeds[k] >>> 32))
+                    ? queue[head++] : (int) seeds[k++];
+            int c = g.colOf(cur), r = g.rowOf(cur), nd = dist.get(cur) + 1, o = owner.get(cur);
+            if (nd > range) continue;
+            if (c + 1 < g.cols) tail = relax(cur + 1, nd, o, tail);
+            if (c > 0)          tail = relax(cur - 1, nd, o, tail);
+            if (r + 1 < g.rows) tail = relax(cur + g.cols, nd, o, tail);
+            if (r > 0)          tail = relax(cur - g.cols, nd, o, tail);
+        }
+    }
+
+    private int relax(int nb, int nd, int o, int tail) {
+        if (nd >= dist.get(nb) || !g.passable(nb, mask)) return tail;
+        dist.set(nb, nd);
+        owner.set(nb, o);
+        return push(nb, tail);
+    }
+
+    private int push(int idx, int tail) {
+        if (tail == queue.length) queue = Arrays.copyOf(queue, Math.min(g.size(), tail * 2));
+        queue[tail] = idx;
+        return tail + 1;
+    }
+
+    /** Path distance from tile idx to the nearest coin, or UNREACHABLE. */
+    public int distance(int idx) { return dist.get(idx); }
+
+    /**
+     * Neighbour of idx that is one step closer to the nearest coin, or -1 if no
+     * coin is reachable (or idx is already on one). Ties go right, left, down, up.
+     */
+    public int nextStep(int idx) {
+        int d = dist.get(idx);
+        if (d == 0 || d == UNREACHABLE) return -1;
+        int c = g.colOf(idx), r = g.rowOf(idx);
+        if (c + 1 < g.cols && dist.get(idx + 1) == d - 1)      return idx + 1;
+        if (c > 0 && dist.get(idx - 1) == d - 1)               return idx - 1;
+        if (r + 1 < g.rows && dist.get(idx + g.cols) == d - 1) return idx + g.cols;
+        if (r > 0 && dist.get(idx - g.cols) == d - 1)          return idx - g.cols;
+        return -1;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Components – connected regions of a Grid under one passability mask.
+ *
+ * Built once with a union-find pass over the tiles (each tile is joined to
+ * its left and upper neighbour when both are passable), then flattened into a
+ * label per tile, so sameComponent() is two array reads. Trees and the river
+ * can wall off pockets of land; asking here first lets callers skip searches
+ * that would flood a whole region only to report "unreachable".
+ *
+ * On a large grid (Grid.isLarge()) a pass over every tile would read the whole
+ * map and cost an int per tile, so the tiles are labelled one TileInts chunk
+ * at a time instead, when a query first touches the chunk, and joined to the
+ * chunks next to it that are already labelled. A query labels the chunks
+ * spanning its two ends plus a ring around them, and two tiles count as
+ * connected when a path between them stays within the labelled chunks.
+ *
+ * Grid.components(mask) builds one per mask on first use.
+ */
+public class Components {
+    static final int MAX_QUERY_CHUNKS = 16; // large grid: a wider query is not checked (the search itself is bounded)
+
+    private final int[] label; // component id per tile, -1 if the tile is blocked (null on a large grid)
+    private final int[] sizes; // tiles per component id
+
+    // large grid: region id + 1 per tile (0 blocked) in labelled chunks, and a union-find over the ids
+    private final Grid g;
+    private final int mask, chunksX, chunksY;
+    private final TileInts region;
+    private final boolean[] labelled;
+    private int[] parent;
+    private int regions;
+
+    public Components(Grid g, int mask) {
+        this.g = g;
+        this.mask = mask;
+        this.chunksX = (g.cols + TileInts.CHUNK - 1) >> TileInts.CHUNK_SHIFT;
+        this.chunksY = (g.rows + TileInts.CHUNK - 1) >> TileInts.CHUNK_SHIFT;
+        if (g.isLarge()) {
+            label = sizes = null;
+            region = new TileInts(g, 0);
+            labelled = new boolean[chunksX * chunksY];
+            parent = new int[1024];
+            return;
+        }
+        region = null;
+        labelled = null;
+        int n = g.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (!g.passable(i, mask)) { parent[i] = -1; continue; }
+            parent[i] = i;
+            if (g.colOf(i) > 0 && parent[i - 1] >= 0)       union(parent, i, i - 1);
+            if (g.rowOf(i) > 0 && parent[i - g.cols] >= 0)  union(parent, i, i - g.cols);
+        }
+
+        label = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (parent[i] < 0) { label[i] = -1; continue; }
+            int root = find(parent, i);
+            // roots are always the smallest index of their set, so they are labelled first
+            label[i] = root == i ? count++ : label[root];
+        }
+        sizes = new int[count];
+        for (int id : label) if (id >= 0) sizes[id]++;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // path halving
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a), rb = find(parent, b);
+        if (ra == rb) return;
+        if (ra < rb) parent[rb] = ra; else parent[ra] = rb; // keep the smaller index as root
+    }
+
+    /** True when b can be reached from a (both passable and connected). */
+    public boolean sameComponent(int a, int b) {
+        int la = componentOf(a);
+        return la >= 0 && la == componentOf(b);
+    }
+
+    public boolean sameComponent(Grid g, Cell a, Cell b) { return sameComponent(g.index(a), g.index(b)); }
+
+    /**
+     * True when a search from `from` can reach `to`. Like sameComponent, but an
+     * actor standing on a tile blocked for its mask (a Cat that started on a
+     * tree...) can still step off it, so a blocked `from` counts as part of
+     * every region its open neighbours are in.
+     */
+    public boolean connected(Grid g, int from, int to) {
+        if (region != null && !labelSpan(from, to)) return g.passable(to, mask); // too far apart to check
+        int lt = componentOf(to);
+        if (lt < 0) return false;
+        int lf = componentOf(from);
+        if (lf >= 0) return lf == lt;
+        int c = g.colOf(from), r = g.rowOf(from);
+        return (c + 1 < g.cols && componentOf(from + 1) == lt) || (c > 0 && componentOf(from - 1) == lt)
+                || (r + 1 < g.rows && componentOf(from + g.cols) == lt) || (r > 0 && componentOf(from - g.cols) == lt);
+    }
+
+    public boolean connected(Grid g, Cell from, Cell to) { return connected(g, g.index(from), g.index(to)); }
+
+    /** Component id of tile idx, or -1 if it is blocked (on a large grid: within the chunks labelled so far). */
+    public int componentOf(int idx) {
+        if (label != null) return label[idx];
+        labelChunk(chunkOf(idx));
+        int id = region.get(idx) - 1;
+        return id < 0 ? -1 : find(parent, id);
+    }
+
+    /** Number of tiles in idx's component (0 if it is blocked). Not known on a large grid. */
+    public int sizeOf(int idx) {
+        if (label == null) throw new IllegalStateException("component sizes are not kept on a large grid");
+        return label[idx] < 0 ? 0 : sizes[label[idx]];
+    }
+
+    /** Number of components. Not known on a large grid. */
+    public int count() {
+        if (label == null) throw new IllegalStateException("components are not counted on a large grid");
+        return sizes.length;
+    }
+
+    // --- large grids: one chunk at a time ---
+
+    private int chunkOf(int idx) {
+        return (g.rowOf(idx) >> TileInts.CHUNK_SHIFT) * chunksX + (g.colOf(idx) >> TileInts.CHUNK_SHIFT);
+    }
+
+    /** Label the chunks spanning a and b plus a ring around them; false if that is more than MAX_QUERY_CHUNKS. */
+    private boolean labelSpan(int a, int b) {
+        int ax = g.colOf(a) >> TileInts.CHUNK_SHIFT, ay = g.rowOf(a) >> TileInts.CHUNK_SHIFT;
+        int bx = g.colOf(b) >> TileInts.CHUNK_SHIFT, by = g.rowOf(b) >> TileInts.CHUNK_SHIFT;
+        int x0 = Math.max(0, Math.min(ax, bx) - 1), x1 = Math.min(chunksX - 1, Math.max(ax, bx) + 1);
+        int y0 = Math.max(0, Math.min(ay, by) - 1), y1 = Math.min(chunksY - 1, Math.max(ay, by) + 1);
+        if ((x1 - x0 + 1) * (y1 - y0 + 1) > MAX_QUERY_CHUNKS) return false;
+        for (int y = y0; y <= y1; y++) for (int x = x0; x <= x1; x++) labelChunk(y * chunksX + x);
+        return true;
+    }
+
+    private void labelChunk(int ch) {
+        if (labelled[ch]) return;
+        labelled[ch] = true;
+        int x0 = (ch % chunksX) << TileInts.CHUNK_SHIFT, y0 = (ch / chunksX) << TileInts.CHUNK_SHIFT;
+        int x1 = Math.min(g.cols, x0 + TileInts.CHUNK), y1 = Math.min(g.rows, y0 + TileInts.CHUNK);
+        for (int r = y0; r < y1; r++) {
+            for (int c = x0; c < x1; c++) {
+                int i = g.index(c, r);
+                if (!g.passable(i, mask)) continue;
+                int left = c > x0 ? region.get(i - 1) : 0, up = r > y0 ? region.get(i - g.cols) : 0;
+                if (left > 0) {
+                    region.set(i, left);
+                    if (up > 0) union(parent, left - 1, up - 1);
+                } else if (up > 0) {
+                    region.set(i, up);
+                } else {
+                    region.set(i, newRegion() + 1);
+                }
+            }
+        }
+        // join the chunk to the labelled chunks around it
+        if (x0 > 0 && labelled[ch - 1])         for (int r = y0; r < y1; r++) join(g.index(x0, r), g.index(x0 - 1, r));
+        if (x1 < g.cols && labelled[ch + 1])    for (int r = y0; r < y1; r++) join(g.index(x1 - 1, r), g.index(x1, r));
+        if (y0 > 0 && labelled[ch - chunksX])   for (int c = x0; c < x1; c++) join(g.index(c, y0), g.index(c, y0 - 1));
+        if (y1 < g.rows && labelled[ch + chunksX]) for (int c = x0; c < x1; c++) join(g.index(c, y1 - 1), g.index(c, y1));
+    }
+
+    private void join(int a, int b) {
+        int ra = region.get(a), rb = region.get(b);
+        if (ra > 0 && rb > 0) union(parent, ra - 1, rb - 1);
+    }
+
+    private int newRegion() {
+        if (regions == parent.length) parent = java.util.Arrays.copyOf(parent, regions * 2);
+        parent[regions] = regions;
+        return regions++;
+    }
+}
@@ -4,23 +4,22 @@
  * Week 5 base: simple drawable Actor (Dog) on a grid.
  * MOD from Week 5:
  *  - Player control via setDirection(dx, dy) when Dog is chosen.
- *  - AI when Cat is chosen: BFS hunt when close; otherwise wander.
+ *  - AI when Cat is chosen: A* hunt when close (river costs extra when slowed); otherwise wander.
  *  - Unstuck escape when not progressing.
  *  - Swim slowdown on river tiles; catching Cat ends the game.
  *  - Visual differentiation: rich brown body + lighter muzzle patch.
  */
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Random;
 
 public class Dog extends Actor implements Predator, Updatable, Swimmable {
+    private static final Color MUZZLE = new Color(205, 133, 63), EARS = new Color(101, 67, 33);
+
     // --- AI pacing ---
     private int moveCooldown = 0;
     public int moveDelay = 2;
     private int sightRange = 7;
-    private final Random rng = new Random();
 
     // --- player control ---
     private int moveDx = 0, moveDy = 0;
@@ -32,6 +31,7 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
     // --- unstuck detection ---
     private int stuckTicks = 0;
     private static final int MAX_STUCK = 6;
+    private Cell escape; // kept until reached, so an async route to it gets followed
 
     public Dog(Cell start) {
         this.loc = start;
@@ -45,11 +45,11 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
         if ("Dog".equals(s.chosenCharacter)) {
             // === Player-controlled Dog ===
             if (moveDx != 0 || moveDy != 0) {
-                int col = (loc.x - Grid.OFFSET) / Cell.SIZE + moveDx;
-                int row = (loc.y - Grid.OFFSET) / Cell.SIZE + moveDy;
-                if (col >= 0 && col < Grid.COLS && row >= 0 && row < Grid.ROWS) {
+                int col = loc.col + moveDx;
+                int row = loc.row + moveDy;
+                if (s.grid.inBounds(col, row)) {
                     Cell next = s.grid.cellAtColRow(col, row);
-                    if (next instanceof RiverCell) {
+                    if (s.grid.isRiver(next)) {
                         int delay = swimDelayTicks();
                         swimTick = (swimTick + 1) % (delay + 1);
                         if (swimTick != 0) { moveDx = 0; moveDy = 0; return; }
@@ -66,12 +66,7 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
         }
 
         // Win check after any move
-        if (s.cat.isAlive() && this.loc == s.cat.location()) {
-            s.cat.bitten();
-            s.cat.alive = false;
-            s.gameOver = true;
-            s.gameMessage = "Dog wins! (caught the cat)";
-        }
+        catchPrey(s);
     }
 
     @Override
@@ -81,13 +76,14 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
 
         Cell next = null;
 
-        // Chase when close using BFS; otherwise wander
+        // Chase when close (and the Cat is reachable at all) using the fastest path in ticks; otherwise wander
         int dist = s.grid.manhattan(loc, s.cat.location());
-        if (dist <= sightRange) {
-            next = PathFind.nextStepBFS(s.grid, this, loc, s.cat.location());
+        boolean reachable = s.grid.components(Grid.passMaskFor(this)).connected(s.grid, loc, s.cat.location());
+        if (dist <= sightRange && reachable) {
+            next = s.grid.cellAt(chaseStep(s, s.grid.index(s.cat.location())));
         } else {
             java.util.List<Cell> ns = s.grid.neighbors(loc);
-            Collections.shuffle(ns, rng);
+            Collections.shuffle(ns, s.rng);
             for (Cell c : ns) {
                 if (!s.grid.isBlockedFor(this, c)) { next = c; break; }
             }
@@ -95,7 +91,7 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
 
         if (next == null) { moveCooldown = moveDelay; return; }
 
-        if (next instanceof RiverCell) {
+        if (s.grid.isRiver(next)) {
             int delay = swimDelayTicks();
             swimTick = (swimTick + 1) % (delay + 1);
             if (swimTick != 0) { moveCooldown = moveDelay; return; }
@@ -107,12 +103,21 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
         moveCooldown = moveDelay;
 
         // catch check (also done in update)
-        if (s.cat.isAlive() && this.loc == s.cat.location()) {
-            s.cat.bitten();
-            s.cat.alive = false;
-            s.gameOver = true;
-            s.gameMessage = "Dog wins! (caught the cat)";
-        }
+        catchPrey(s);
+    }
+
+    /** Catch any live prey sharing our tile; catching one ends the match. */
+    private void catchPrey(Stage s) {
+        Actor prey = s.occupancy.find(s.grid.index(loc), a -> a instanceof Prey && a.isAlive());
+        if (prey == null) return;
+        prey.bitten();
+        prey.alive = false;
+        s.endGame(Stage.Outcome.DOG_CATCH, "Dog wins! (caught the cat)");
+    }
+
+    /** Next tile toward target on the fastest path in ticks (A*, through the Stage's PathService). */
+    private int chaseStep(Stage s, int target) {
+        return s.paths.chaseStep(this, s.grid.index(loc), target);
     }
 
     /** If we didn't move for several ticks, pick a random reachable land target and BFS to it. */
@@ -120,9 +125,9 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
         if (loc == before) {
             stuckTicks++;
             if (stuckTicks >= MAX_STUCK) {
-                Cell escape = randomReachableLandCell(s);
+                if (escape == null || escape == loc) escape = s.randomReachableLand(this);
                 if (escape != null) {
-                    Cell step = PathFind.nextStepBFS(s.grid, this, loc, escape);
+                    Cell step = s.paths.nextStep(this, loc, escape);
                     if (step != null && step != loc && !s.grid.isBlockedFor(this, step)) {
                         stepTo(s.grid, step);
                     }
@@ -134,42 +139,29 @@ public class Dog extends Actor implements Predator, Updatable, Swimmable {
         }
     }
 
-    /** Pick a random land (non-river) cell that this actor can enter. */
-    private Cell randomReachableLandCell(Stage s) {
-        java.util.List<Cell> options = new ArrayList<>();
-        for (int c = 0; c < Grid.COLS; c++) {
-            for (int r = 0; r < Grid.ROWS; r++) {
-                Cell cell = s.grid.cells[c][r];
-                if (cell instanceof RiverCell) continue;
-                if (!s.grid.isBlockedFor(this, cell)) options.add(cell);
-            }
-        }
-        return options.isEmpty() ? null : options.get(rng.nextInt(options.size()));
-    }
-
     @Override public void swim(Grid g) { }
 
     @Override
-    public void paint(Graphics g) {
+    public void paintAt(Graphics g, int x, int y) {
         // body
         g.setColor(alive ? color : Color.GRAY);
-        g.fillOval(loc.x + 3, loc.y + 3, loc.width - 6, loc.height - 6);
+        g.fillOval(x + 3, y + 3, Cell.SIZE - 6, Cell.SIZE - 6);
 
         // lighter muzzle patch to differentiate
-        g.setColor(new Color(205, 133, 63));
-        g.fillOval(loc.x + loc.width/2 - 6, loc.y + loc.height/2 - 6, 12, 12);
+        g.setColor(MUZZLE);
+        g.fillOval(x + Cell.SIZE/2 - 6, y + Cell.SIZE/2 - 6, 12, 12);
 
         // eyes
         g.setColor(Color.WHITE);
-        g.fillOval(loc.x + 10, loc.y + 14, 6, 6);
-        g.fillOval(loc.x + loc.width - 16, loc.y + 14, 6, 6);
+        g.fillOval(x + 10, y + 14, 6, 6);
+        g.fillOval(x + Cell.SIZE - 16, y + 14, 6, 6);
         g.setColor(Color.BLACK);
-        g.fillOval(loc.x + 12, loc.y + 16, 3, 3);
-        g.fillOval(loc.x + loc.width - 14, loc.y + 16, 3, 3);
+        g.fillOval(x + 12, y + 16, 3, 3);
+        g.fillOval(x + Cell.SIZE - 14, y + 16, 3, 3);
 
         // ears
-        g.setColor(new Color(101, 67, 33));
-        g.fillOval(loc.x + 4, loc.y, 10, 10);
-        g.fillOval(loc.x + loc.width - 14, loc.y, 10, 10);
+        g.setColor(EARS);
+        g.fillOval(x + 4, y, 10, 10);
+        g.fillOval(x + Cell.SIZE - 14, y, 10, 10);
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+import java.util.Arrays;
+
+/**
+ * FrameStats – rolling numbers for the render loop: frames per second, frame
+ * interval percentiles, simulation ticks per second, ticks dropped when the
+ * loop fell too far behind to catch up, and the longest wait from a key
+ * press to the tick that applied it.
+ *
+ * The loop calls frame() once per presented frame and ticked()/dropped()/
+ * input() as it steps the simulation; poll() hands back a one-line summary about once a
+ * second (and null in between), e.g. for the window title.
+ */
+public class FrameStats {
+    private static final long REPORT_NS = 1_000_000_000L;
+
+    private final long[] intervals = new long[512]; // frame-to-frame times in the current window
+    private int samples, frames, ticks, dropped;
+    private long lastFrame = -1, windowStart = -1, inputLag = -1;
+
+    public void frame(long now) {
+        if (windowStart < 0) windowStart = now;
+        if (lastFrame >= 0 && samples < intervals.length) intervals[samples++] = now - lastFrame;
+        lastFrame = now;
+        frames++;
+    }
+
+    public void ticked(int n)  { ticks += n; }
+    public void dropped(int n) { dropped += n; }
+    /** A key press took lagNs to reach the simulation (ignored when negative: no press). */
+    public void input(long lagNs) { inputLag = Math.max(inputLag, lagNs); }
+
+    /** A summary of the last second, or null if a second has not passed yet. */
+    public String poll(long now) {
+        if (windowStart < 0 || now - windowStart < REPORT_NS) return null;
+        double secs = (now - windowStart) / 1e9;
+        long[] sorted = Arrays.copyOf(intervals, samples);
+        Arrays.sort(sorted);
+        String line = String.format("%.0f fps, frame p50 %.1f ms / p99 %.1f ms, %.1f ticks/s%s%s",
+                frames / secs, pct(sorted, 0.50), pct(sorted, 0.99), ticks / secs,
+                dropped > 0 ? ", " + dropped + " ticks dropped" : "",
+                inputLag >= 0 ? String.format(", input lag %.0f ms", inputLag / 1e6) : "");
+        samples = frames = ticks = dropped = 0;
+        inputLag = -1;
+        windowStart = now;
+        return line;
+    }
+
+    private static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Random;
+
+/**
+ * FreeCells – the tiles a coin may spawn on right now, kept as a dense array
+ * plus each tile's position in it, so add, remove, contains and a uniformly
+ * random pick are all O(1); removal moves the last tile into the gap.
+ *
+ * Which tiles can ever be free is fixed when the set is built (for a match:
+ * every tile the Cat can reach). Occupancy takes a tile out while a coin or an
+ * actor is on it and puts it back once the tile is empty again, so spawning
+ * never has to look at the coins or actors already placed.
+ *
+ * On a large grid (Grid.isLarge()) the two arrays would be sized to the map,
+ * so the set keeps only the allowed tiles that are taken, and sample() draws
+ * random tiles until one is free (a few draws, since coins and actors cover
+ * a tiny part of such a map). There the allowed board may also cover just a
+ * window of the grid, so the tiles around the Cat can be chosen without
+ * reading the rest of the map.
+ */
+public class FreeCells {
+    private final BitGrid allowed;       // over the grid window starting at (col0, row0); the whole grid unless sparse
+    private final int col0, row0, gridCols;
+    private final int[] cells;  // the free tiles, in no particular order (null when sparse)
+    private final int[] pos;    // pos[tile] = its position in cells, or -1
+    private final java.util.Set<Integer> taken; // sparse: allowed tiles that are not free
+    private final int allowedCount;
+    private int size;
+
+    public FreeCells(BitGrid allowed, boolean sparse) { this(allowed, 0, 0, allowed.cols, sparse); }
+
+    /** Sparse sets only: allowed covers the window of a gridCols-wide grid whose top-left tile is (col0, row0). */
+    public FreeCells(BitGrid allowed, int col0, int row0, int gridCols, boolean sparse) {
+        if (!sparse && (col0 != 0 || row0 != 0 || gridCols != allowed.cols))
+            throw new IllegalArgumentException("a dense FreeCells must cover the whole grid");
+        this.allowed = allowed;
+        this.col0 = col0;
+        this.row0 = row0;
+        this.gridCols = gridCols;
+        this.allowedCount = allowed.count();
+        if (sparse) {
+            cells = pos = null;
+            taken = new java.util.HashSet<>();
+            size = allowedCount;
+            return;
+        }
+        this.taken = null;
+        this.cells = new int[allowedCount];
+        this.pos = new int[allowed.cols * allowed.rows];
+        java.util.Arrays.fill(pos, -1);
+        allowed.forEach(this::add);
+    }
+
+    public int size() { return size; }
+    public boolean contains(int idx) {
+        return cells != null ? pos[idx] >= 0 : isAllowed(idx) && !taken.contains(idx);
+    }
+
+    // sparse: idx is inside the window and allowed there
+    private boolean isAllowed(int idx) {
+        int c = idx % gridCols - col0, r = idx / gridCols - row0;
+        return c >= 0 && c < allowed.cols && r >= 0 && r < allowed.rows && allowed.get(r * allowed.cols + c);
+    }
+
+    // sparse: grid index of window tile i
+    private int toGrid(int i) { return (row0 + i / allowed.cols) * gridCols + col0 + i % allowed.cols; }
+
+    /** Mark idx free again (ignored if it already is, or can never hold a coin). */
+    public void add(int idx) {
+        if (cells == null) {
+            if (taken.remove(idx)) size++;
+            return;
+        }
+        if (pos[idx] >= 0 || !allowed.get(idx)) return;
+        pos[idx] = size;
+        cells[size++] = idx;
+    }
+
+    public void remove(int idx) {
+        if (cells == null) {
+            if (isAllowed(idx) && taken.add(idx)) size--;
+            return;
+        }
+        int p = pos[idx];
+        if (p < 0) return;
+        int last = cells[--size];
+        cells[p] = last;
+        pos[last] = p;
+        pos[idx] = -1;
+    }
+
+    /** A uniformly random free tile (one rng draw, a few when sparse), or -1 if none is free. */
+    public int sample(Random rng) {
+        if (size == 0) return -1;
+        if (cells != null) return cells[rng.nextInt(size)];
+        int n = allowed.cols * allowed.rows;
+        for (int tries = 0; tries < 64; tries++) { // most of a jungle is reachable land
+            int i = toGrid(rng.nextInt(n));
+            if (contains(i)) return i;
+        }
+        int i;
+        do i = toGrid(allowed.nth(rng.nextInt(allowedCount))); while (taken.contains(i));
+        return i;
+    }
+}
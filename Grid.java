@@ -1,74 +1,256 @@
 import java.awt.*;
 import java.util.Random;
 
+/**
+ * Grid – the jungle map.
+ *
+ * Terrain is stored packed, one byte per tile in terrain[row * cols + col],
+ * and every AI query (passability, neighbours, distances) works on that
+ * array with index arithmetic. Cell objects are only views: they are created
+ * the first time a tile is asked for (for painting, actor positions and
+ * coins) and then cached so the same tile is always the same Cell.
+ *
+ * A grid opened from a MapFile reads its terrain straight from the mapped
+ * chunks instead of a heap array. On large grids (isLarge()) the Cell views
+ * are kept in a map, since only the tiles actors and coins visit ever get
+ * one, and the per-match indexes (Occupancy, FreeCells, CoinField) go sparse
+ * the same way. So does routing: Components labels chunks as queries reach
+ * them, PathFind and AStar keep their scratch in TileInts and stop after
+ * LARGE_SEARCH tiles, and RiverRoutes only routes near the destination. No
+ * HPAStar cluster graph or passBits board is built for such a grid, since
+ * either would read every chunk of the map.
+ */
 public class Grid {
     public static final int COLS = 20, ROWS = 20, OFFSET = 10;
-    public final Cell[][] cells = new Cell[COLS][ROWS];
 
-    public Grid() {
-        for (int c = 0; c < COLS; c++)
-            for (int r = 0; r < ROWS; r++)
-                cells[c][r] = new Cell(OFFSET + c * Cell.SIZE, OFFSET + r * Cell.SIZE);
+    // terrain types stored in the packed array
+    public static final byte LAND = 0, RIVER = 1, TREE = 2;
+
+    // passability masks: bit (1 << type) is set when that terrain can be entered
+    public static final int WALKER_MASK  = 1 << LAND;
+    public static final int SWIMMER_MASK = (1 << LAND) | (1 << RIVER);
+    public static final int RIVER_MASK   = 1 << RIVER;
+
+    private static final int MAX_VIEW_ARRAY = 1 << 22; // above this, Cell views and per-match indexes go in maps
+    static final int LARGE_SEARCH = 1 << 18;           // tiles a search on a large grid reaches before giving up (a 512x512 area)
+
+    public final int cols, rows;
+    private final byte[] terrain; // null when backed by a MapFile
+    private final MapFile map;
+    private final Cell[] views;
+    private final java.util.Map<Integer, Cell> viewMap;
+    // built on first use by the synchronized accessors below (PathService workers may ask too)
+    private PathFind pathFind;
+    private RiverRoutes riverRoutes;
+    private AStar aStar;
+    private final java.util.Map<Integer, HPAStar> hierarchies = new java.util.HashMap<>();
+    private final java.util.Map<Integer, BitGrid> passBits = new java.util.HashMap<>();
+    private final java.util.Map<Integer, Components> components = new java.util.HashMap<>();
+
+    public Grid(Random rng) { this(COLS, ROWS, rng); }
+
+    /**
+     * A generated jungle: meandering 3-wide river plus random trees, seeded
+     * from rng. Maps that fit in one WorldGen chunk (the default 20x20 one
+     * included) use the classic generator, whose river drifts at most one
+     * column per row; bigger ones are built chunk by chunk by WorldGen.
+     */
+    public Grid(int cols, int rows, Random rng) {
+        this(cols, rows, cols <= WorldGen.CHUNK && rows <= WorldGen.CHUNK
+                ? classicTerrain(cols, rows, rng) : new WorldGen(rng.nextLong()).generate(cols, rows));
+    }
+
+    private static byte[] classicTerrain(int cols, int rows, Random rng) {
+        byte[] terrain = new byte[cols * rows];
 
         // meandering river (3 tiles wide)
-        Random rng = new Random();
-        int baseCol = 7 + rng.nextInt(3);     // 7..9
         int riverWidth = 3;
-        for (int r = 0; r < ROWS; r++) {
+        int baseCol = clamp(cols * 7 / 20 + rng.nextInt(3), 1, cols - riverWidth - 1); // 7..9 on 20 cols
+        for (int r = 0; r < rows; r++) {
             for (int w = 0; w < riverWidth; w++) {
-                int c = clamp(baseCol + w, 0, COLS - 1);
-                cells[c][r] = new RiverCell(cells[c][r].x, cells[c][r].y);
+                int c = clamp(baseCol + w, 0, cols - 1);
+                terrain[r * cols + c] = RIVER;
             }
             int shift = rng.nextInt(3) - 1;
-            baseCol = clamp(baseCol + shift, 1, COLS - riverWidth - 1);
+            baseCol = clamp(baseCol + shift, 1, cols - riverWidth - 1);
         }
 
         // random trees on land
-        for (int c = 0; c < COLS; c++)
-            for (int r = 0; r < ROWS; r++)
-                if (!(cells[c][r] instanceof RiverCell) && rng.nextDouble() < 0.12)
-                    cells[c][r] = new TreeCell(cells[c][r].x, cells[c][r].y);
+        for (int c = 0; c < cols; c++)
+            for (int r = 0; r < rows; r++)
+                if (terrain[r * cols + c] != RIVER && rng.nextDouble() < 0.12)
+                    terrain[r * cols + c] = TREE;
+        return terrain;
+    }
+
+    private static int clamp(int v, int lo, int hi) { return Math.max(lo, Math.min(hi, v)); }
+
+    /** Wrap an existing packed terrain array (row-major, one terrain type per byte). */
+    public Grid(int cols, int rows, byte[] terrain) {
+        if (terrain.length != cols * rows) throw new IllegalArgumentException("terrain size does not match " + cols + "x" + rows);
+        this.cols = cols;
+        this.rows = rows;
+        this.terrain = terrain;
+        this.map = null;
+        this.views = isLarge() ? null : new Cell[size()];
+        this.viewMap = views == null ? new java.util.HashMap<>() : null;
+    }
+
+    /** A grid over a memory-mapped map; chunks are paged in as they are read or prefetched. */
+    public Grid(MapFile map) {
+        this.cols = map.cols;
+        this.rows = map.rows;
+        this.terrain = null;
+        this.map = map;
+        this.views = isLarge() ? null : new Cell[size()];
+        this.viewMap = views == null ? new java.util.HashMap<>() : null;
     }
 
-    private int clamp(int v, int lo, int hi) { return Math.max(lo, Math.min(hi, v)); }
+    public static Grid open(java.nio.file.Path path) throws java.io.IOException {
+        return new Grid(MapFile.open(path));
+    }
+
+    public boolean isMapped() { return map != null; }
+
+    /** Page in the map chunks within radius tiles of around (no-op for in-memory grids). */
+    public void prefetch(Cell around, int radius) {
+        if (map != null) map.prefetch(around.col, around.row, radius);
+    }
 
+    /**
+     * Paint the tiles that fall inside g's clip (all of them if there is no clip).
+     * This may run on the paint thread while the simulation uses the grid, so
+     * it never adds to the view cache: a tile without a cached view is painted
+     * through a throwaway one.
+     */
     public void paint(Graphics g) {
-        for (int c = 0; c < COLS; c++)
-            for (int r = 0; r < ROWS; r++)
-                cells[c][r].paint(g);
+        Rectangle clip = g.getClipBounds();
+        int c1 = cols, r1 = rows;
+        if (clip != null) {
+            c1 = Math.min(cols, Math.max(0, (clip.x + clip.width - OFFSET) / Cell.SIZE + 1));
+            r1 = Math.min(rows, Math.max(0, (clip.y + clip.height - OFFSET) / Cell.SIZE + 1));
+        }
+        for (int r = 0; r < r1; r++)
+            for (int c = 0; c < c1; c++) {
+                int idx = index(c, r);
+                Cell v = views != null ? views[idx] : null; // the map is not safe to read concurrently
+                (v != null ? v : newView(idx)).paint(g);
+            }
     }
 
-    public Cell cellAtColRow(int c, int r) { return cells[c][r]; }
+    // --- indexing ---
+
+    public int index(int c, int r) { return r * cols + c; }
+    public int index(Cell cell) { return cell.row * cols + cell.col; }
+    public int colOf(int idx) { return idx % cols; }
+    public int rowOf(int idx) { return idx / cols; }
+    public int size() { return cols * rows; }
+
+    /** True for grids too big for per-tile arrays in every match (over 4M tiles); see TileInts. */
+    public boolean isLarge() { return size() > MAX_VIEW_ARRAY; }
+    public boolean inBounds(int c, int r) { return c >= 0 && c < cols && r >= 0 && r < rows; }
+
+    // --- terrain ---
+
+    public byte terrainAt(int idx) { return terrain != null ? terrain[idx] : map.get(idx % cols, idx / cols); }
+    public boolean isRiver(int idx) { return terrainAt(idx) == RIVER; }
+    public boolean isRiver(Cell cell) { return cell != null && terrainAt(index(cell)) == RIVER; }
+
+    /** Passability mask for an actor: swimmers may enter the river, nobody may enter trees. */
+    public static int passMaskFor(Actor a) { return (a instanceof Swimmable) ? SWIMMER_MASK : WALKER_MASK; }
+
+    public boolean passable(int idx, int mask) { return ((mask >> terrainAt(idx)) & 1) != 0; }
 
     public boolean isBlockedFor(Actor a, Cell cell) {
-        if (cell instanceof Obstacle) return !((Obstacle)cell).isPassableFor(a);
-        return false;
+        return !passable(index(cell), passMaskFor(a));
+    }
+
+    // --- Cell views ---
+
+    public Cell cellAtColRow(int c, int r) { return cellAt(index(c, r)); }
+
+    public Cell cellAt(int idx) {
+        Cell v = views != null ? views[idx] : viewMap.get(idx);
+        if (v == null) {
+            v = newView(idx);
+            if (views != null) views[idx] = v; else viewMap.put(idx, v);
+        }
+        return v;
+    }
+
+    private Cell newView(int idx) {
+        int c = colOf(idx), r = rowOf(idx);
+        switch (terrainAt(idx)) {
+            case RIVER: return new RiverCell(c, r);
+            case TREE:  return new TreeCell(c, r);
+            default:    return new Cell(c, r);
+        }
+    }
+
+    // --- queries ---
+
+    /** Reusable BFS context for this grid (created on first use). */
+    public synchronized PathFind pathFind() {
+        if (pathFind == null) pathFind = new PathFind(this);
+        return pathFind;
+    }
+
+    /** Reusable weighted A* context for this grid (created on first use). */
+    public synchronized AStar aStar() {
+        if (aStar == null) aStar = new AStar(this);
+        return aStar;
+    }
+
+    /** Cluster graph for long-range queries under a passability mask (built on first use). */
+    public synchronized HPAStar hierarchy(int mask) {
+        return hierarchies.computeIfAbsent(mask, m -> new HPAStar(this, m));
+    }
+
+    /** Bitboard of the tiles passable under mask (built on first use; do not modify it). */
+    public synchronized BitGrid passBits(int mask) {
+        return passBits.computeIfAbsent(mask, m -> BitGrid.passable(this, m));
+    }
+
+    /** Connected regions under mask, for O(1) reachability checks (built on first use). */
+    public synchronized Components components(int mask) {
+        return components.computeIfAbsent(mask, m -> new Components(this, m));
+    }
+
+    /**
+     * Build the routing structures for mask now rather than on first use
+     * inside a tick: its regions, and on grids big enough for long queries to
+     * use it, its cluster graph (seconds on a 2048x2048 map). A large grid
+     * labels its regions chunk by chunk as queries reach them instead.
+     */
+    public void prepareRouting(int mask) {
+        components(mask);
+        if (size() >= HPAStar.MIN_TILES && !isLarge()) hierarchy(mask);
+    }
+
+    /** River-only routing tables for this grid (created on first use; the river never changes). */
+    public synchronized RiverRoutes riverRoutes() {
+        if (riverRoutes == null) riverRoutes = new RiverRoutes(this);
+        return riverRoutes;
     }
 
     public java.util.List<Cell> neighbors(Cell c) {
         java.util.List<Cell> res = new java.util.ArrayList<>(4);
-        int col = (c.x - OFFSET) / Cell.SIZE;
-        int row = (c.y - OFFSET) / Cell.SIZE;
-        int[][] d = {{1,0},{-1,0},{0,1},{0,-1}};
-        for (int[] v : d) {
-            int nc = col + v[0], nr = row + v[1];
-            if (nc >= 0 && nc < COLS && nr >= 0 && nr < ROWS) res.add(cells[nc][nr]);
-        }
+        int col = c.col, row = c.row;
+        if (col + 1 < cols) res.add(cellAtColRow(col + 1, row));
+        if (col > 0)        res.add(cellAtColRow(col - 1, row));
+        if (row + 1 < rows) res.add(cellAtColRow(col, row + 1));
+        if (row > 0)        res.add(cellAtColRow(col, row - 1));
         return res;
     }
 
     public int manhattan(Cell a, Cell b) {
-        int ac = (a.x - OFFSET) / Cell.SIZE;
-        int ar = (a.y - OFFSET) / Cell.SIZE;
-        int bc = (b.x - OFFSET) / Cell.SIZE;
-        int br = (b.y - OFFSET) / Cell.SIZE;
-        return Math.abs(ac - bc) + Math.abs(ar - br);
+        return Math.abs(a.col - b.col) + Math.abs(a.row - b.row);
     }
 
     public Cell firstRiverCellOrFallback() {
-        for (int c = 0; c < COLS; c++)
-            for (int r = 0; r < ROWS; r++)
-                if (cells[c][r] instanceof RiverCell) return cells[c][r];
-        return cells[COLS/2][ROWS/2];
+        for (int c = 0; c < cols; c++)
+            for (int r = 0; r < rows; r++)
+                if (terrainAt(index(c, r)) == RIVER) return cellAtColRow(c, r);
+        return cellAtColRow(cols/2, rows/2);
     }
-}
\ No newline at end of file
+}
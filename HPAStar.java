@@ -0,0 +1,330 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPAStar – hierarchical pathfinding for large maps.
+ *
+ * The grid is cut into CLUSTER x CLUSTER blocks. Wherever two neighbouring
+ * blocks share an open stretch of border (open for this passability mask),
+ * an entrance is placed: one tile pair in the middle of a short stretch, or
+ * one at each end of a long one. Entrance tiles become nodes of an abstract
+ * graph, joined across the border with cost 1 and, inside each block, by
+ * their BFS distance. All of that is built once per grid and mask.
+ *
+ * A query links start and goal to the entrances of their own blocks with a
+ * BFS that never leaves the block, runs A* on the abstract graph, and then
+ * refines only the first leg back to tiles, which is all an actor needs to
+ * take its next step. The abstract search uses a 1.25-weighted heuristic:
+ * on 2048x2048 jungles that keeps queries well under a millisecond for
+ * paths a few percent longer than the shortest.
+ *
+ * Not thread-safe; Grid.hierarchy(mask) hands out one per grid and mask.
+ */
+public class HPAStar {
+    public static final int CLUSTER = 16;
+    // grids smaller than this are searched directly; the abstraction does not pay off
+    public static final int MIN_TILES = 128 * 128;
+
+    private final Grid g;
+    private final int mask;
+    private final int k;
+    private final int clustersX, clustersY;
+
+    // abstract graph (CSR layout)
+    private int nodeCount;
+    private int[] nodeTile;
+    private int[] clusterStart, clusterNodes; // nodes of cluster c: clusterNodes[clusterStart[c] .. clusterStart[c+1])
+    private int[] edgeStart, edgeTo, edgeCost;
+
+    // local (single-cluster) BFS scratch, indexed by position inside the cluster
+    private final int[] localDist, localParent, localSeen, localQueue;
+    private int localGen = 0;
+
+    // abstract A* scratch; the two extra slots are the virtual start and goal
+    private int[] cost, parent, seen, closed, goalCost, goalSeen;
+    private long[] heap = new long[64];
+    private int heapSize;
+    private int gen = 0;
+
+    public HPAStar(Grid g, int mask) { this(g, mask, CLUSTER); }
+
+    public HPAStar(Grid g, int mask, int clusterSize) {
+        this.g = g;
+        this.mask = mask;
+        this.k = clusterSize;
+        this.clustersX = (g.cols + k - 1) / k;
+        this.clustersY = (g.rows + k - 1) / k;
+        localDist = new int[k * k]; localParent = new int[k * k];
+        localSeen = new int[k * k]; localQueue = new int[k * k];
+        build();
+    }
+
+    public int nodeCount() { return nodeCount; }
+
+    // --- building ---
+
+    private int[] eFrom = new int[256], eTo = new int[256], eCost = new int[256];
+    private int eCount = 0;
+
+    private void build() {
+        Map<Integer, Integer> nodeOfTile = new HashMap<>();
+        int[] tiles = new int[256];
+
+        // 1) entrances along every shared border
+        for (int cy = 0; cy < clustersY; cy++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                int x0 = cx * k, y0 = cy * k;
+                int x1 = Math.min(g.cols, x0 + k) - 1, y1 = Math.min(g.rows, y0 + k) - 1;
+                if (x1 + 1 < g.cols) { // east border: tiles (x1, y) | (x1 + 1, y)
+                    int run = -1;
+                    for (int y = y0; y <= y1 + 1; y++) {
+                        boolean open = y <= y1 && g.passable(g.index(x1, y), mask) && g.passable(g.index(x1 + 1, y), mask);
+                        if (open && run < 0) run = y;
+                        if (!open && run >= 0) {
+                            for (int y2 : entrancePoints(run, y - 1))
+                                tiles = addTransition(nodeOfTile, tiles, g.index(x1, y2), g.index(x1 + 1, y2));
+                            run = -1;
+                        }
+                    }
+                }
+                if (y1 + 1 < g.rows) { // south border: tiles (x, y1) / (x, y1 + 1)
+                    int run = -1;
+                    for (int x = x0; x <= x1 + 1; x++) {
+                        boolean open = x <= x1 && g.passable(g.index(x, y1), mask) && g.passable(g.index(x, y1 + 1), mask);
+                        if (open && run < 0) run = x;
+                        if (!open && run >= 0) {
+                            for (int x2 : entrancePoints(run, x - 1))
+                                tiles = addTransition(nodeOfTile, tiles, g.index(x2, y1), g.index(x2, y1 + 1));
+                            run = -1;
+                        }
+                    }
+                }
+            }
+        }
+        nodeTile = Arrays.copyOf(tiles, nodeCount);
+
+        // 2) group nodes by cluster (counting sort)
+        int clusters = clustersX * clustersY;
+        clusterStart = new int[clusters + 1];
+        for (int n = 0; n < nodeCount; n++) clusterStart[clusterOf(nodeTile[n]) + 1]++;
+        for (int c = 0; c < clusters; c++) clusterStart[c + 1] += clusterStart[c];
+        clusterNodes = new int[nodeCount];
+        int[] fill = Arrays.copyOf(clusterStart, clusters);
+        for (int n = 0; n < nodeCount; n++) clusterNodes[fill[clusterOf(nodeTile[n])]++] = n;
+
+        // 3) intra-cluster edges from one bounded BFS per node
+        for (int c = 0; c < clusters; c++) {
+            for (int a = clusterStart[c]; a < clusterStart[c + 1]; a++) {
+                int na = clusterNodes[a];
+                localBfs(nodeTile[na], c);
+                for (int b = a + 1; b < clusterStart[c + 1]; b++) {
+                    int nb = clusterNodes[b];
+                    int d = localDistTo(nodeTile[nb], c);
+                    if (d >= 0) { addEdge(na, nb, d); addEdge(nb, na, d); }
+                }
+            }
+        }
+
+        // 4) compress edges into CSR
+        edgeStart = new int[nodeCount + 1];
+        for (int e = 0; e < eCount; e++) edgeStart[eFrom[e] + 1]++;
+        for (int n = 0; n < nodeCount; n++) edgeStart[n + 1] += edgeStart[n];
+        edgeTo = new int[eCount];
+        edgeCost = new int[eCount];
+        int[] pos = Arrays.copyOf(edgeStart, nodeCount);
+        for (int e = 0; e < eCount; e++) {
+            int p = pos[eFrom[e]]++;
+            edgeTo[p] = eTo[e];
+            edgeCost[p] = eCost[e];
+        }
+        eFrom = eTo = eCost = null;
+
+        int n = nodeCount + 2;
+        cost = new int[n]; parent = new int[n]; seen = new int[n]; closed = new int[n];
+        goalCost = new int[n]; goalSeen = new int[n];
+    }
+
+    private static int[] entrancePoints(int from, int to) {
+        if (to - from + 1 < 6) return new int[]{ (from + to) / 2 };
+        return new int[]{ from, to };
+    }
+
+    private int[] addTransition(Map<Integer, Integer> nodeOfTile, int[] tiles, int a, int b) {
+        int na = nodeOfTile.computeIfAbsent(a, t -> nodeCount++);
+        if (na == tiles.length) tiles = Arrays.copyOf(tiles, tiles.length * 2);
+        tiles[na] = a;
+        int nb = nodeOfTile.computeIfAbsent(b, t -> nodeCount++);
+        if (nb == tiles.length) tiles = Arrays.copyOf(tiles, tiles.length * 2);
+        tiles[nb] = b;
+        addEdge(na, nb, 1);
+        addEdge(nb, na, 1);
+        return tiles;
+    }
+
+    private void addEdge(int from, int to, int c) {
+        if (eCount == eFrom.length) {
+            eFrom = Arrays.copyOf(eFrom, eCount * 2);
+            eTo = Arrays.copyOf(eTo, eCount * 2);
+            eCost = Arrays.copyOf(eCost, eCount * 2);
+        }
+        eFrom[eCount] = from; eTo[eCount] = to; eCost[eCount] = c;
+        eCount++;
+    }
+
+    // --- local BFS inside one cluster ---
+
+    private int clusterOf(int tile) { return (g.rowOf(tile) / k) * clustersX + g.colOf(tile) / k; }
+
+    private int localIndex(int tile, int c) {
+        return (g.rowOf(tile) - (c / clustersX) * k) * k + (g.colOf(tile) - (c % clustersX) * k);
+    }
+
+    private void localBfs(int src, int c) {
+        if (++localGen == Integer.MAX_VALUE) { Arrays.fill(localSeen, 0); localGen = 1; }
+        int x0 = (c % clustersX) * k, y0 = (c / clustersX) * k;
+        int w = Math.min(g.cols - x0, k), h = Math.min(g.rows - y0, k);
+        int s = localIndex(src, c);
+        int head = 0, tail = 0;
+        localQueue[tail++] = s;
+        localSeen[s] = localGen;
+        localDist[s] = 0;
+        localParent[s] = -1;
+        while (head < tail) {
+            int cur = localQueue[head++];
+            int lx = cur % k, ly = cur / k;
+            for (int d = 0; d < 4; d++) {
+                int nx = lx + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int ny = ly + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+                int nb = ny * k + nx;
+                if (localSeen[nb] == localGen) continue;
+                if (!g.passable(g.index(x0 + nx, y0 + ny), mask)) continue;
+                localSeen[nb] = localGen;
+                localDist[nb] = localDist[cur] + 1;
+                localParent[nb] = cur;
+                localQueue[tail++] = nb;
+            }
+        }
+    }
+
+    /** Distance from the last localBfs source to tile (same cluster), or -1. */
+    private int localDistTo(int tile, int c) {
+        int l = localIndex(tile, c);
+        return localSeen[l] == localGen ? localDist[l] : -1;
+    }
+
+    /** First tile on the last localBfs tree from its source toward tile. */
+    private int localFirstStep(int tile, int c) {
+        int l = localIndex(tile, c);
+        while (localParent[l] >= 0 && localParent[localParent[l]] >= 0) l = localParent[l];
+        int x0 = (c % clustersX) * k, y0 = (c / clustersX) * k;
+        return g.index(x0 + l % k, y0 + l / k);
+    }
+
+    // --- queries ---
+
+    /**
+     * First tile on a (near-)shortest path from start to goal, or start if the
+     * goal cannot be reached.
+     */
+    public int nextStep(int start, int goal) {
+        if (start == goal || !g.passable(goal, mask)) return start;
+        int sc = clusterOf(start), gc = clusterOf(goal);
+
+        // same block: try to stay inside it first
+        if (sc == gc) {
+            localBfs(start, sc);
+            if (localDistTo(goal, sc) > 0) return localFirstStep(goal, sc);
+        }
+
+        if (++gen == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0); Arrays.fill(closed, 0); Arrays.fill(goalSeen, 0);
+            gen = 1;
+        }
+        final int S = nodeCount, G = nodeCount + 1;
+
+        // link the goal to its block's entrances
+        localBfs(goal, gc);
+        boolean goalLinked = false;
+        for (int i = clusterStart[gc]; i < clusterStart[gc + 1]; i++) {
+            int n = clusterNodes[i];
+            int d = localDistTo(nodeTile[n], gc);
+            if (d >= 0) { goalSeen[n] = gen; goalCost[n] = d; goalLinked = true; }
+        }
+        if (!goalLinked) return start;
+
+        // link the start (its BFS tree is kept for the refinement below)
+        localBfs(start, sc);
+        heapSize = 0;
+        seen[S] = gen; cost[S] = 0; parent[S] = -1;
+        for (int i = clusterStart[sc]; i < clusterStart[sc + 1]; i++) {
+            int n = clusterNodes[i];
+            int d = localDistTo(nodeTile[n], sc);
+            if (d >= 0) open(n, S, d, goal);
+        }
+
+        // A* over the abstract graph
+        while (heapSize > 0) {
+            int n = (int) (pop() & 0xFFFFFFFFL);
+            if (closed[n] == gen) continue;
+            closed[n] = gen;
+            if (n == G) break;
+            if (goalSeen[n] == gen) open(G, n, cost[n] + goalCost[n], goal);
+            for (int e = edgeStart[n]; e < edgeStart[n + 1]; e++) {
+                int m = edgeTo[e];
+                if (closed[m] != gen) open(m, n, cost[n] + edgeCost[e], goal);
+            }
+        }
+        if (closed[G] != gen) return start;
+
+        // walk back to the first waypoint that is not the start tile itself
+        int w = G, prev = -1;
+        while (parent[w] != S) { prev = w; w = parent[w]; }
+        if (nodeTile[w] == start) w = prev; // start sits on an entrance: take the next waypoint
+        if (w == G) return localFirstStep(goal, sc);
+        int tile = nodeTile[w];
+        if (clusterOf(tile) != sc) return tile; // across the border, one step away
+        return localFirstStep(tile, sc);
+    }
+
+    private void open(int n, int from, int c, int goal) {
+        if (seen[n] == gen && cost[n] <= c) return;
+        seen[n] = gen;
+        cost[n] = c;
+        parent[n] = from;
+        int t = n < nodeCount ? nodeTile[n] : goal;
+        int h = Math.abs(g.colOf(t) - g.colOf(goal)) + Math.abs(g.rowOf(t) - g.rowOf(goal));
+        long f = c + h + (h >> 2); // weighted A*, w = 1.25
+        push((f << 32) | n);
+    }
+
+    // --- lazy-deletion binary heap of (f << 32 | node) ---
+
+    private void push(long v) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int pos = heapSize++;
+        while (pos > 0) {
+            int up = (pos - 1) >> 1;
+            if (heap[up] <= v) break;
+            heap[pos] = heap[up];
+            pos = up;
+        }
+        heap[pos] = v;
+    }
+
+    private long pop() {
+        long top = heap[0], last = heap[--heapSize];
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= last) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        if (heapSize > 0) heap[pos] = last;
+        return top;
+    }
+}
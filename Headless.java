@@ -0,0 +1,65 @@
+/**
+ * Headless – drives Stage without a window, as fast as the CPU allows.
+ *
+ * Main ticks once every Stage.TICK_MS so a human can play. For AI-vs-AI
+ * balancing we only care about the result, so this class steps Stage.tick()
+ * back to back with no sleep, no JFrame and no painting.
+ *
+ * Usage: java -cp out Headless [matches] [--crowd=N]
+ *   --crowd=N  every match also runs a Population of N agents (see Stage.crowd)
+ */
+public class Headless {
+    /** Ticks in a full match before the timer runs out (500 with the default knobs). */
+    public static final int MATCH_TICKS = Stage.START_TIME_MS / Stage.TICK_MS;
+
+    /** Build a Stage where both Cat and Dog are AI-controlled. */
+    public static Stage newAiMatch() { return newAiMatch(0); }
+
+    /** Same, with a crowd of that many Population agents alongside. */
+    public static Stage newAiMatch(int crowd) {
+        Stage s = new Stage();
+        s.crowd = crowd;
+        s.startMatch("AI");
+        return s;
+    }
+
+    /** Tick until the match ends or maxTicks have run. Returns the number of ticks simulated. */
+    public static int fastForward(Stage s, int maxTicks) {
+        int n = 0;
+        while (n < maxTicks && !s.isOver()) {
+            s.tick();
+            n++;
+        }
+        return n;
+    }
+
+    /** Play one AI-vs-AI match to the end and return the finished Stage. */
+    public static Stage playMatch() { return playMatch(0); }
+
+    public static Stage playMatch(int crowd) {
+        Stage s = newAiMatch(crowd);
+        fastForward(s, MATCH_TICKS);
+        return s;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int matches = 1000, crowd = 0;
+        for (String a : args) {
+            if (a.startsWith("--crowd=")) crowd = Integer.parseInt(a.substring("--crowd=".length()));
+            else matches = Integer.parseInt(a);
+        }
+
+        // warm up the JIT so the timing below is steady-state
+        for (int i = 0; i < Math.min(matches, 200); i++) playMatch(crowd);
+
+        long totalTicks = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < matches; i++) totalTicks += playMatch(crowd).ticks;
+        long elapsed = System.nanoTime() - t0;
+
+        System.out.printf("%d matches, %d ticks in %.1f ms%n", matches, totalTicks, elapsed / 1e6);
+        System.out.printf("%.1f us per match, %.2f us per tick%n",
+                elapsed / 1e3 / matches, elapsed / 1e3 / Math.max(1, totalTicks));
+    }
+}
@@ -0,0 +1,11 @@
+/**
+ * Heuristic – lower bound on the remaining cost between two tiles, used by AStar.
+ *
+ * MANHATTAN assumes the cheapest tile costs 1 and is exact on open
+ * 4-connected ground, which is how every actor moves.
+ */
+public interface Heuristic {
+    int estimate(int dCol, int dRow);
+
+    Heuristic MANHATTAN = (dc, dr) -> Math.abs(dc) + Math.abs(dr);
+}
@@ -0,0 +1,101 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InputRing – key presses handed from the key listener to the simulation
+ * thread without locks, each stamped with System.nanoTime() when it arrived.
+ *
+ * There is one producer (the EDT) and one consumer (Stage.tick()), so a
+ * bounded ring with two counters is enough: the producer fills a slot and
+ * then advances tail, the consumer reads up to tail and then advances head,
+ * and each counter is written by its own side only. A press that finds the
+ * ring full is dropped.
+ *
+ * drain() takes one tick's moves under a Policy:
+ *   LAST_WINS    – only the newest press counts (the old setInput behaviour)
+ *   ONE_PER_TICK – the oldest press is taken, the rest wait for later ticks
+ *   ALL          – every waiting press is taken this tick, in order
+ * Presses older than STALE_NS (e.g. made during a pause) are thrown away
+ * under every policy, so a held-down key cannot build up a backlog.
+ */
+public class InputRing {
+    enum Policy { LAST_WINS, ONE_PER_TICK, ALL }
+
+    static final int[][] DIRS = {{0,0},{-1,0},{1,0},{0,-1},{0,1}}; // code 0 none, 1..4 = L R U D
+    static final int MAX_MOVES_PER_TICK = 8;
+    static final long STALE_NS = 3L * Stage.TICK_MS * 1_000_000L;
+
+    private final byte[] codes;
+    private final long[] times;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to read (consumer)
+    private final AtomicLong tail = new AtomicLong(); // next slot to write (producer)
+    private long maxLagNs = -1; // consumer only: longest press-to-tick delay since takeMaxLagNs()
+
+    /** capacity must be a power of two. */
+    public InputRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        codes = new byte[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    static int code(int dx, int dy) {
+        for (int i = 1; i < DIRS.length; i++)
+            if (DIRS[i][0] == dx && DIRS[i][1] == dy) return i;
+        return 0;
+    }
+
+    /** Queue a move pressed at time `nanos` (producer thread only). False if the ring was full. */
+    public boolean offer(int dx, int dy, long nanos) {
+        long t = tail.get();
+        if (t - head.get() == codes.length) return false;
+        int i = (int) t & mask;
+        codes[i] = (byte) code(dx, dy);
+        times[i] = nanos;
+        tail.lazySet(t + 1); // publishes the slot written above
+        return true;
+    }
+
+    public boolean isEmpty() { return head.get() == tail.get(); }
+
+    /**
+     * Take this tick's moves under `policy` into out (up to out.length of
+     * them) and return how many (consumer thread only).
+     */
+    public int drain(Policy policy, long now, byte[] out) {
+        long h = head.get(), t = tail.get();
+        while (h < t && now - times[(int) h & mask] > STALE_NS) h++;
+        int n = 0;
+        switch (policy) {
+            case LAST_WINS:
+                if (h < t) out[n++] = take(t - 1, now);
+                h = t;
+                break;
+            case ONE_PER_TICK:
+                if (h < t) out[n++] = take(h++, now);
+                break;
+            case ALL:
+                while (h < t && n < out.length) out[n++] = take(h++, now);
+                break;
+        }
+        head.lazySet(h); // hands the slots back to the producer
+        return n;
+    }
+
+    private byte take(long slot, long now) {
+        int i = (int) slot & mask;
+        maxLagNs = Math.max(maxLagNs, now - times[i]);
+        return codes[i];
+    }
+
+    /** Discard everything waiting, e.g. keys pressed on the start screen (consumer thread only). */
+    public void clear() { head.lazySet(tail.get()); }
+
+    /** Longest delay from a press to the tick that took it since the last call, or -1 if none (consumer thread only). */
+    public long takeMaxLagNs() {
+        long lag = maxLagNs;
+        maxLagNs = -1;
+        return lag;
+    }
+}
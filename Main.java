@@ -3,97 +3,271 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferStrategy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 public class Main extends JFrame {
+    static final int MAX_CATCH_UP = 5; // ticks per frame before the loop gives up on lost time
+    static final long HEARTBEAT_NS = 250_000_000L; // redraw an idle scene this often anyway
 
+    // MOD: Shared key handling for both views: character selection & in-game controls.
+    // Keys arrive on the EDT: moves go into the Stage's input ring, stamped with the time
+    // of the press, and every other key is queued for the simulation thread to apply.
+    static KeyAdapter controls(Stage stage, Queue<Consumer<Stage>> commands) {
+        return new KeyAdapter() {
+            @Override 
+            public void keyPressed(KeyEvent e) {
+                int k = e.getKeyCode();
+                if (k == KeyEvent.VK_Q) System.exit(0);
+                int[] d = direction(k);
+                if (d != null) stage.input.offer(d[0], d[1], System.nanoTime());
+                else commands.add(s -> apply(s, k));
+            }
+        };
+    }
+
+    // MOD: Movement keys (arrows or W/A/S/D); null for any other key.
+    static int[] direction(int k) {
+        switch (k) {
+            case KeyEvent.VK_LEFT:
+            case KeyEvent.VK_A: return new int[]{-1, 0};
+            case KeyEvent.VK_RIGHT:
+            case KeyEvent.VK_D: return new int[]{1, 0};
+            case KeyEvent.VK_UP:
+            case KeyEvent.VK_W: return new int[]{0, -1};
+            case KeyEvent.VK_DOWN:
+            case KeyEvent.VK_S: return new int[]{0, 1};
+            default: return null;
+        }
+    }
+
+    static void apply(Stage stage, int k) {
+
+        // MOD: Handle start screen key events (character selection).
+        if (stage.showStart) {
+            if (k == KeyEvent.VK_1) { // Cat
+                stage.startMatch("Cat");
+            } else if (k == KeyEvent.VK_2) { // Dog
+                stage.startMatch("Dog");
+            }
+            return;
+        }
+
+        // MOD: Handle in-game controls.
+        switch (k) {
+            case KeyEvent.VK_R: stage.resetGame(); break;
+            case KeyEvent.VK_P: stage.togglePause(); break;
+        }
+    }
+
+    // Passive view: Swing decides when to paint (run with --passive).
     static class App extends JPanel {
-        Stage stage = new Stage();
+        final TripleBuffer<RenderSnapshot> frames;
+        StageRenderer renderer = new StageRenderer();
 
-        public App() {
+        public App(Stage stage, TripleBuffer<RenderSnapshot> frames, Queue<Consumer<Stage>> commands) {
+            this.frames = frames;
             // MOD: Set preferred size for the drawing area.
-            setPreferredSize(new Dimension(1024, 720));
+            setPreferredSize(new Dimension(StageRenderer.WIDTH, StageRenderer.HEIGHT));
             setFocusable(true);
             requestFocusInWindow();
-
-            // MOD: Add KeyListener to handle character selection & in-game controls.
-            addKeyListener(new KeyAdapter() {
-                @Override 
-                public void keyPressed(KeyEvent e) {
-                    int k = e.getKeyCode();
-
-                    // MOD: Handle start screen key events (character selection).
-                    if (stage.showStart) {
-                        if (k == KeyEvent.VK_1) { // Cat
-                            stage.chosenCharacter = "Cat";
-                            stage.showStart = false;
-                            stage.buildWorldWithChoice();
-                        } else if (k == KeyEvent.VK_2) { // Dog
-                            stage.chosenCharacter = "Dog";
-                            stage.showStart = false;
-                            stage.buildWorldWithChoice();
-                        }
-                        return;
-                    }
-
-                    // MOD: Handle in-game movement and controls.
-                    switch (k) {
-                        case KeyEvent.VK_LEFT:
-                        case KeyEvent.VK_A: stage.setInput(-1, 0); break;
-                        case KeyEvent.VK_RIGHT:
-                        case KeyEvent.VK_D: stage.setInput(1, 0); break;
-                        case KeyEvent.VK_UP:
-                        case KeyEvent.VK_W: stage.setInput(0, -1); break;
-                        case KeyEvent.VK_DOWN:
-                        case KeyEvent.VK_S: stage.setInput(0, 1); break;
-                        case KeyEvent.VK_R: stage.resetGame(); break;
-                        case KeyEvent.VK_Q: System.exit(0); break;
-                        case KeyEvent.VK_P: stage.togglePause(); break;
-                    }
-                }
-            });
+            addKeyListener(controls(stage, commands));
         }
 
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             // MOD: Paint a soft pink background.
-            g.setColor(new Color(255, 228, 235));
+            g.setColor(StageRenderer.BACKGROUND);
             g.fillRect(0, 0, getWidth(), getHeight());
-            stage.paint(g);
+            RenderSnapshot snap = frames.latest();
+            if (snap.seq > 0) renderer.paint(g, snap, 1.0);
+        }
+    }
+
+    // Active view: the game loop draws every frame itself into a page-flipped BufferStrategy.
+    static class ActiveView extends Canvas {
+        private static final long serialVersionUID = 1L;
+        StageRenderer renderer = new StageRenderer();
+
+        ActiveView(Stage stage, Queue<Consumer<Stage>> commands) {
+            setPreferredSize(new Dimension(StageRenderer.WIDTH, StageRenderer.HEIGHT));
+            setIgnoreRepaint(true); // nothing is painted from the EDT
+            setFocusable(true);
+            addKeyListener(controls(stage, commands));
+        }
+
+        void render(BufferStrategy bs, RenderSnapshot snap, double alpha) {
+            do {
+                do {
+                    Graphics g = bs.getDrawGraphics();
+                    try {
+                        g.setColor(StageRenderer.BACKGROUND);
+                        g.fillRect(0, 0, getWidth(), getHeight());
+                        renderer.paint(g, snap, alpha);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (bs.contentsRestored());
+                bs.show();
+            } while (bs.contentsLost());
+            Toolkit.getDefaultToolkit().sync();
         }
     }
 
-    // MOD: Main method initializes JFrame and starts the game loop.
+    // MOD: Main method initializes JFrame and starts the game loop (--passive for the old repaint loop,
+    // --input=last|one|all for how key presses within one tick are applied).
     public static void main(String[] args) {
-        Main m = new Main();
-        m.run();
+        boolean passive = false;
+        InputRing.Policy policy = InputRing.Policy.ONE_PER_TICK;
+        for (String a : args) {
+            if (a.equals("--passive")) passive = true;
+            else if (a.equals("--input=last")) policy = InputRing.Policy.LAST_WINS;
+            else if (a.equals("--input=one")) policy = InputRing.Policy.ONE_PER_TICK;
+            else if (a.equals("--input=all")) policy = InputRing.Policy.ALL;
+        }
+        Main m = new Main(passive, policy);
+        if (passive) m.runPassive(); else m.runActive();
     }
 
+    // Only the simulation thread (the one running runPassive/runActive) touches the Stage.
+    // The EDT sends it key commands and paints from the snapshots it publishes.
+    private final Stage stage = new Stage();
+    private final Queue<Consumer<Stage>> commands = new ConcurrentLinkedQueue<>();
+    private final TripleBuffer<RenderSnapshot> frames = new TripleBuffer<>(RenderSnapshot::new);
+    private long seq;
+
     private final App app;
+    private final ActiveView view;
+    private final FrameStats stats = new FrameStats();
 
     // MOD: JFrame configuration, setting content pane and window properties.
-    public Main() {
+    public Main(boolean passive, InputRing.Policy policy) {
         setTitle("Pinky Jungle");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        app = new App();
-        setContentPane(app);
+        stage.asyncPaths = true; // path searches run off the simulation thread in the window
+        stage.inputPolicy = policy;
+        if (passive) {
+            app = new App(stage, frames, commands);
+            view = null;
+            setContentPane(app);
+        } else {
+            app = null;
+            view = new ActiveView(stage, commands);
+            add(view);
+        }
         pack();
         setLocationRelativeTo(null);
         setVisible(true);
+        if (view != null) {
+            view.createBufferStrategy(2);
+            view.requestFocus();
+        }
+    }
+
+    /** Apply the keys pressed since the last call, on the simulation thread. */
+    private void drainCommands() {
+        for (Consumer<Stage> c; (c = commands.poll()) != null; ) c.accept(stage);
+    }
+
+    /** Copy the Stage into a fresh snapshot for the painter and hand it over; returns it. */
+    private RenderSnapshot publish() {
+        RenderSnapshot snap = frames.back();
+        snap.capture(stage, ++seq);
+        stage.clearDirty();
+        frames.publish();
+        return snap; // still safe to read: the painter never writes a snapshot
     }
 
     // MOD: Game loop implementation calling tick, repaint and thread sleep.
-    private void run() {
+    private void runPassive() {
         while (true) {
-            if (!app.stage.paused && !app.stage.showStart) {
-                app.stage.tick();
+            drainCommands();
+            if (!stage.paused && !stage.showStart) {
+                stage.tick();
             }
-            repaint();
+            repaintChanges(publish());
             try { 
-                Thread.sleep(120); 
+                Thread.sleep(Stage.TICK_MS); 
             } catch (InterruptedException e) { 
                 break; 
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Ask Swing to repaint only what changed in snap (nothing at all when idle).
+     * The request goes out after snap is published, so the paint that serves
+     * it draws snap or a newer snapshot; if the painter skips snapshots, Swing
+     * has merged their requests and the clip still covers every change.
+     */
+    private void repaintChanges(RenderSnapshot snap) {
+        if (snap.allDirty) {
+            app.repaint();
+        } else {
+            for (int i = 0; i < snap.dirtyCount; i++) {
+                Cell c = snap.dirty[i];
+                app.repaint(c.x - 1, c.y - 1, c.width + 2, c.height + 2); // + tile border
+            }
+            if (snap.hudDirty) app.repaint(StageRenderer.HUD_AREA);
+        }
+    }
+
+    /**
+     * Fixed-timestep loop: real time is added to an accumulator and Stage.tick()
+     * runs once per TICK_MS of it, while frames are drawn as often as the display
+     * refreshes with actors interpolated between ticks. After a stall it runs at
+     * most MAX_CATCH_UP ticks in one frame and drops the rest of the backlog.
+     * Frames where nothing changed and nobody is gliding between tiles are
+     * skipped, apart from a slow heartbeat in case the window was uncovered.
+     */
+    private void runActive() {
+        final long tickNs = Stage.TICK_MS * 1_000_000L;
+        final long frameNs = 1_000_000_000L / refreshRate();
+        BufferStrategy bs = view.getBufferStrategy();
+        long prev = System.nanoTime(), acc = 0, lastFrame = 0;
+
+        while (true) {
+            long now = System.nanoTime();
+            drainCommands();
+            boolean running = !stage.paused && !stage.showStart && !stage.isOver();
+            acc = running ? acc + (now - prev) : 0;
+            prev = now;
+
+            int steps = 0;
+            while (acc >= tickNs && steps < MAX_CATCH_UP) {
+                stage.tick();
+                acc -= tickNs;
+                steps++;
+            }
+            if (acc >= tickNs) {
+                stats.dropped((int) (acc / tickNs));
+                acc %= tickNs;
+            }
+            stats.ticked(steps);
+            stats.input(stage.input.takeMaxLagNs());
+
+            boolean gliding = false;
+            if (running) for (Actor a : stage.actors) gliding |= a.previousLocation() != a.location();
+            if (gliding || stage.anyDirty() || now - lastFrame >= HEARTBEAT_NS) {
+                publish();
+                view.render(bs, frames.latest(), running ? acc / (double) tickNs : 1.0);
+                stats.frame(now);
+                lastFrame = now;
+            }
+            String line = stats.poll(now);
+            if (line != null) SwingUtilities.invokeLater(() -> setTitle("Pinky Jungle - " + line));
+
+            long wait = frameNs - (System.nanoTime() - now);
+            if (wait > 0) LockSupport.parkNanos(wait);
+        }
+    }
+
+    private int refreshRate() {
+        int hz = getGraphicsConfiguration().getDevice().getDisplayMode().getRefreshRate();
+        return hz == DisplayMode.REFRESH_RATE_UNKNOWN || hz <= 0 ? 60 : hz;
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * MapFile – jungle maps on disk, memory-mapped one chunk at a time.
+ *
+ * Layout (big-endian):
+ *   'J' 'M' 'A' 'P'   magic
+ *   int version       VERSION
+ *   int cols, rows
+ *   int chunkShift    chunks are (1 << chunkShift) tiles square
+ *   then side * side terrain bytes per chunk, chunks in row-major order;
+ *   chunks on the right and bottom edge are padded to full size with TREE.
+ *
+ * Opening a map reads only the header. A chunk is mapped with
+ * FileChannel.map the first time one of its tiles is read, or earlier when
+ * prefetch() sees an actor coming, so a 10k x 10k map opens at once and its
+ * terrain lives in the OS page cache instead of on the Java heap.
+ *
+ * Usage: java -cp out MapFile write <file> <cols> <rows> [seed]
+ *        java -cp out MapFile info <file>
+ */
+public class MapFile implements Closeable {
+    public static final int VERSION = 1;
+    public static final int DEFAULT_CHUNK_SHIFT = 8; // 256 x 256 tiles, 64 KiB per chunk
+    private static final int MAGIC = ('J' << 24) | ('M' << 16) | ('A' << 8) | 'P';
+    private static final int HEADER_BYTES = 20;
+
+    public final int cols, rows, chunkShift;
+    private final int side, local, chunksX, chunksY;
+    private final FileChannel ch;
+    private final AtomicReferenceArray<MappedByteBuffer> chunks; // PathService workers read tiles too
+
+    private MapFile(FileChannel ch, int cols, int rows, int chunkShift) {
+        this.ch = ch;
+        this.cols = cols;
+        this.rows = rows;
+        this.chunkShift = chunkShift;
+        this.side = 1 << chunkShift;
+        this.local = side - 1;
+        this.chunksX = (cols + local) >> chunkShift;
+        this.chunksY = (rows + local) >> chunkShift;
+        this.chunks = new AtomicReferenceArray<>(chunksX * chunksY);
+    }
+
+    /** Open a map for reading; only the header is read here. */
+    public static MapFile open(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+            while (h.hasRemaining() && ch.read(h) >= 0) { }
+            h.flip();
+            if (h.remaining() < HEADER_BYTES || h.getInt() != MAGIC) throw new IOException(path + ": not a jungle map");
+            int version = h.getInt();
+            if (version != VERSION) throw new IOException(path + ": unsupported map version " + version);
+            int cols = h.getInt(), rows = h.getInt(), shift = h.getInt();
+            if (cols <= 0 || rows <= 0 || (long) cols * rows > Integer.MAX_VALUE || shift < 4 || shift > 14)
+                throw new IOException(path + ": bad map header");
+
+            MapFile m = new MapFile(ch, cols, rows, shift);
+            long need = HEADER_BYTES + (long) m.chunksX * m.chunksY * m.side * m.side;
+            if (ch.size() < need) throw new IOException(path + ": truncated (" + ch.size() + " of " + need + " bytes)");
+            return m;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /** Write g's terrain to path in this format. */
+    public static void write(Path path, Grid g, int chunkShift) throws IOException {
+        int side = 1 << chunkShift;
+        int chunksX = (g.cols + side - 1) >> chunkShift, chunksY = (g.rows + side - 1) >> chunkShift;
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+            h.putInt(MAGIC).putInt(VERSION).putInt(g.cols).putInt(g.rows).putInt(chunkShift).flip();
+            while (h.hasRemaining()) out.write(h);
+
+            ByteBuffer buf = ByteBuffer.allocate(side * side);
+            for (int cy = 0; cy < chunksY; cy++) {
+                for (int cx = 0; cx < chunksX; cx++) {
+                    buf.clear();
+                    for (int r = cy * side; r < (cy + 1) * side; r++)
+                        for (int c = cx * side; c < (cx + 1) * side; c++)
+                            buf.put(g.inBounds(c, r) ? g.terrainAt(g.index(c, r)) : Grid.TREE);
+                    buf.flip();
+                    while (buf.hasRemaining()) out.write(buf);
+                }
+            }
+        }
+    }
+
+    // --- tiles ---
+
+    public byte get(int col, int row) {
+        int id = (row >> chunkShift) * chunksX + (col >> chunkShift);
+        MappedByteBuffer b = chunks.get(id);
+        if (b == null) b = map(id);
+        return b.get(((row & local) << chunkShift) | (col & local));
+    }
+
+    private MappedByteBuffer map(int id) {
+        try {
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + (long) id * side * side, side * side);
+            return chunks.compareAndSet(id, null, b) ? b : chunks.get(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Map and page in every chunk within radius tiles of (col, row), ahead of anyone reading it. */
+    public void prefetch(int col, int row, int radius) {
+        int cx0 = Math.max(0, col - radius) >> chunkShift, cx1 = Math.min(cols - 1, col + radius) >> chunkShift;
+        int cy0 = Math.max(0, row - radius) >> chunkShift, cy1 = Math.min(rows - 1, row + radius) >> chunkShift;
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int id = cy * chunksX + cx;
+                if (chunks.get(id) == null) map(id).load();
+            }
+        }
+    }
+
+    public int chunkCount() { return chunks.length(); }
+
+    public int mappedChunks() {
+        int n = 0;
+        for (int i = 0; i < chunks.length(); i++) if (chunks.get(i) != null) n++;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException { ch.close(); } // mapped chunks stay valid until collected
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4 && args[0].equals("write")) {
+            int cols = Integer.parseInt(args[2]), rows = Integer.parseInt(args[3]);
+            long seed = args.length > 4 ? Long.parseLong(args[4]) : new Random().nextLong();
+            long t0 = System.nanoTime();
+            write(Paths.get(args[1]), new Grid(cols, rows, new Random(seed)), DEFAULT_CHUNK_SHIFT);
+            System.out.printf("wrote %dx%d map (seed %d) in %.0f ms%n", cols, rows, seed, (System.nanoTime() - t0) / 1e6);
+        } else if (args.length == 2 && args[0].equals("info")) {
+            long t0 = System.nanoTime();
+            try (MapFile m = open(Paths.get(args[1]))) {
+                System.out.printf("%dx%d map, version %d, %d chunks of %d^2, opened in %.2f ms%n",
+                        m.cols, m.rows, VERSION, m.chunkCount(), m.side, (System.nanoTime() - t0) / 1e6);
+            }
+        } else {
+            System.out.println("usage: MapFile write <file> <cols> <rows> [seed] | MapFile info <file>");
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * MatchLog – records a match as its seed plus the moves taken on each tick,
+ * and replays it bit-exactly.
+ *
+ * Every random choice in a match comes from Stage.rng, which is seeded from
+ * Stage.seed, so the seed, the world settings and the player's moves per
+ * tick (after the input policy has picked them from the key presses) are all
+ * that is needed to re-simulate it. Inputs are stored as run-length encoded direction codes
+ * (AI ticks and idle ticks collapse into one run), so a full 60 s match is
+ * usually a few hundred bytes.
+ *
+ * Format:
+ *   'P' 'J' version choice(0 AI, 1 Cat, 2 Dog) policy(InputRing.Policy ordinal)
+ *   seed(8 bytes, big-endian)
+ *   varints mapCols, mapRows, keepCoins, flags (bit 0: asyncPaths), crowd, then
+ *   the map path as a varint byte length and UTF-8 bytes (length 0 = generated jungle),
+ *   a varint count of async path deliveries, then per delivery a varint tick
+ *   (relative to the previous one) and the varint PathService query number,
+ *   then varint runs of (length << 3 | code), code 0 none, 1..4 = L R U D;
+ *   code 5 is one tick with several moves: a varint count, then one code byte each
+ *
+ * Usage: java -cp out MatchLog match.pjlog
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class MatchLog {
+    private static final int VERSION = 1;
+    private static final int MULTI = 5; // code for a tick with more than one move
+    private static final int[][] DIRS = InputRing.DIRS;
+
+    final long seed;
+    final String choice;
+    final InputRing.Policy policy;
+    final int cols, rows, keepCoins; // Stage.mapCols, mapRows, keepCoins
+    final boolean asyncPaths;        // Stage.asyncPaths (the ticks async paths landed on are recorded too)
+    final int crowd;                 // Stage.crowd
+    final String mapPath;            // Stage.mapPath, or null for a generated jungle
+    private byte[] moves = new byte[Headless.MATCH_TICKS]; // every tick's moves, back to back
+    private int[] ends = new int[Headless.MATCH_TICKS];    // tick t's moves end at moves[ends[t]]
+    private int ticks = 0, moveTotal = 0;
+    private int[] pathTicks = new int[16], pathSeqs = new int[16]; // async path deliveries, in order
+    private int paths = 0;
+
+    public MatchLog(long seed, String choice, InputRing.Policy policy, int cols, int rows, String mapPath, int keepCoins,
+                    boolean asyncPaths, int crowd) {
+        this.seed = seed;
+        this.choice = choice;
+        this.policy = policy;
+        this.cols = cols;
+        this.rows = rows;
+        this.mapPath = mapPath;
+        this.keepCoins = keepCoins;
+        this.asyncPaths = asyncPaths;
+        this.crowd = crowd;
+    }
+
+    public int ticks() { return ticks; }
+
+    /** Called by Stage.tick() with the n moves (direction codes) it is about to apply. */
+    void record(byte[] codes, int n) {
+        if (ticks == ends.length) ends = Arrays.copyOf(ends, ends.length * 2);
+        if (moveTotal + n > moves.length) moves = Arrays.copyOf(moves, Math.max(moves.length * 2, moveTotal + n));
+        System.arraycopy(codes, 0, moves, moveTotal, n);
+        moveTotal += n;
+        ends[ticks++] = moveTotal;
+    }
+
+    /** Called by PathService when query seq's path is handed over at the start of tick. */
+    void recordPathDelivery(int tick, int seq) {
+        if (paths == pathTicks.length) {
+            pathTicks = Arrays.copyOf(pathTicks, paths * 2);
+            pathSeqs = Arrays.copyOf(pathSeqs, paths * 2);
+        }
+        pathTicks[paths] = tick;
+        pathSeqs[paths++] = seq;
+    }
+
+    int pathDeliveries() { return paths; }
+    int pathDeliveryTick(int i) { return pathTicks[i]; }
+    int pathDeliverySeq(int i) { return pathSeqs[i]; }
+
+    private int start(int tick) { return tick == 0 ? 0 : ends[tick - 1]; }
+
+    /** The run-length code for one tick: its single move, 0 for none, MULTI for several. */
+    private int code(int tick) {
+        int n = ends[tick] - start(tick);
+        return n == 0 ? 0 : n == 1 ? moves[start(tick)] : MULTI;
+    }
+
+    // --- encoding ---
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write('P'); out.write('J'); out.write(VERSION);
+        out.write("Cat".equals(choice) ? 1 : "Dog".equals(choice) ? 2 : 0);
+        out.write(policy.ordinal());
+        for (int i = 7; i >= 0; i--) out.write((int) (seed >>> (8 * i)));
+        writeVarint(out, cols);
+        writeVarint(out, rows);
+        writeVarint(out, keepCoins);
+        writeVarint(out, asyncPaths ? 1 : 0);
+        writeVarint(out, crowd);
+        byte[] path = mapPath == null ? new byte[0] : mapPath.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, path.length);
+        out.write(path, 0, path.length);
+        writeVarint(out, paths);
+        for (int i = 0; i < paths; i++) {
+            writeVarint(out, pathTicks[i] - (i == 0 ? 0 : pathTicks[i - 1]));
+            writeVarint(out, pathSeqs[i]);
+        }
+        int i = 0;
+        while (i < ticks) {
+            int c = code(i), run = 1;
+            if (c == MULTI) {
+                writeVarint(out, (1L << 3) | MULTI);
+                writeVarint(out, ends[i] - start(i));
+                for (int m = start(i); m < ends[i]; m++) out.write(moves[m]);
+            } else {
+                while (i + run < ticks && code(i + run) == c) run++;
+                writeVarint(out, ((long) run << 3) | c);
+            }
+            i += run;
+        }
+        return out.toByteArray();
+    }
+
+    public static MatchLog decode(byte[] data) {
+        if (data.length < 13 || data[0] != 'P' || data[1] != 'J')
+            throw new IllegalArgumentException("not a match log");
+        if (data[2] != VERSION)
+            throw new IllegalArgumentException("unsupported match log version " + data[2]);
+        String choice = data[3] == 1 ? "Cat" : data[3] == 2 ? "Dog" : "AI";
+        if (data[4] < 0 || data[4] >= InputRing.Policy.values().length)
+            throw new IllegalArgumentException("bad input policy");
+        InputRing.Policy policy = InputRing.Policy.values()[data[4]];
+        long seed = 0;
+        for (int p = 5; p < 13; p++) seed = (seed << 8) | (data[p] & 0xFF);
+
+        int[] pos = {13};
+        int cols = (int) readVarint(data, pos), rows = (int) readVarint(data, pos);
+        int keepCoins = (int) readVarint(data, pos), flags = (int) readVarint(data, pos);
+        int crowd = (int) readVarint(data, pos), len = (int) readVarint(data, pos);
+        if (cols <= 0 || rows <= 0 || keepCoins < 0 || crowd < 0 || len < 0 || pos[0] + len > data.length)
+            throw new IllegalArgumentException("bad world settings");
+        String mapPath = len == 0 ? null : new String(data, pos[0], len, StandardCharsets.UTF_8);
+        pos[0] += len;
+        MatchLog log = new MatchLog(seed, choice, policy, cols, rows, mapPath, keepCoins, (flags & 1) != 0, crowd);
+        int deliveries = (int) readVarint(data, pos), at = 0;
+        if (deliveries < 0) throw new IllegalArgumentException("bad path delivery count");
+        for (int d = 0; d < deliveries; d++) {
+            at += (int) readVarint(data, pos);
+            log.recordPathDelivery(at, (int) readVarint(data, pos));
+        }
+        byte[] tick = new byte[InputRing.MAX_MOVES_PER_TICK];
+        while (pos[0] < data.length) {
+            long v = readVarint(data, pos);
+            int c = (int) (v & 7);
+            if (c == MULTI) {
+                int n = (int) readVarint(data, pos);
+                if (n > tick.length || pos[0] + n > data.length) throw new IllegalArgumentException("bad move count " + n);
+                for (int m = 0; m < n; m++) {
+                    tick[m] = data[pos[0]++];
+                    if (tick[m] <= 0 || tick[m] >= DIRS.length) throw new IllegalArgumentException("bad input code " + tick[m]);
+                }
+                for (long run = v >>> 3; run > 0; run--) log.record(tick, n);
+                continue;
+            }
+            if (c >= DIRS.length) throw new IllegalArgumentException("bad input code " + c);
+            tick[0] = (byte) c;
+            for (long run = v >>> 3; run > 0; run--) log.record(tick, c == 0 ? 0 : 1);
+        }
+        return log;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) { out.write((int) ((v & 0x7F) | 0x80)); v >>>= 7; }
+        out.write((int) v);
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long v = 0; int shift = 0;
+        while (true) {
+            if (pos[0] >= data.length) throw new IllegalArgumentException("truncated match log");
+            int b = data[pos[0]++] & 0xFF;
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+            shift += 7;
+        }
+    }
+
+    public void save(Path file) throws IOException { Files.write(file, encode()); }
+    public static MatchLog load(Path file) throws IOException { return decode(Files.readAllBytes(file)); }
+
+    // --- replay ---
+
+    /** Re-run the recorded match headless at full speed and return the finished Stage. */
+    public Stage replay() {
+        Stage s = new Stage();
+        s.replaying = this;
+        s.inputPolicy = policy;
+        s.mapCols = cols;
+        s.mapRows = rows;
+        s.mapPath = mapPath == null ? null : Paths.get(mapPath);
+        s.keepCoins = keepCoins;
+        s.asyncPaths = asyncPaths;
+        s.crowd = crowd;
+        s.startMatch(choice, seed);
+        for (int t = 0; t < ticks && !s.isOver(); t++) {
+            for (int m = start(t); m < ends[t]; m++) s.queueInput(DIRS[moves[m]][0], DIRS[moves[m]][1]);
+            s.tick();
+        }
+        return s;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            System.err.println("usage: java MatchLog <file>");
+            return;
+        }
+        MatchLog log = load(Paths.get(args[0]));
+        Stage s = log.replay();
+        System.out.printf("seed %d, %s, %s input, %d ticks: %s%n", log.seed, log.choice, log.policy, s.ticks, s.gameMessage);
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Occupancy – which coin and which actors stand on each tile, so pickups,
+ * catches, bites and "who is near me" cost time in proportion to the tiles
+ * looked at, not to how many coins or actors there are.
+ *
+ * A tile holds at most one coin. Actors on the same tile form a linked list
+ * through Actor.nextOnTile, headed from the tile; Actor.moveTo() keeps it up
+ * to date, so code that moves an actor must go through moveTo (or stepTo)
+ * rather than assigning loc. Stage.coins stays the list of every coin; each
+ * Coin remembers its slot in it so a pickup is a swap with the last one.
+ * Tiles with neither a coin nor an actor are kept in `free` (if given), the
+ * set coins are spawned from.
+ *
+ * On a large grid (Grid.isLarge()) the per-tile arrays would cost more heap
+ * than the whole match needs, so coins and list heads go in hash maps
+ * instead, holding only the tiles that have something on them.
+ *
+ * Radius queries walk the diamond of tiles within Manhattan distance r of
+ * the centre, ring by ring, so nearest() stops at the closest ring with a
+ * match. Within a ring tiles are visited in a fixed order (by column, then
+ * row), which keeps ties deterministic.
+ */
+public class Occupancy {
+    private final Grid g;
+    private final Stage.Coin[] coins;
+    private final Actor[] actors; // head of each tile's actor list
+    private final java.util.Map<Integer, Stage.Coin> coinMap;  // instead of the arrays on a large grid
+    private final java.util.Map<Integer, Actor> actorMap;
+    private final FreeCells free; // may be null
+
+    public Occupancy(Grid g, FreeCells free) {
+        this.g = g;
+        this.free = free;
+        boolean large = g.isLarge();
+        this.coins = large ? null : new Stage.Coin[g.size()];
+        this.actors = large ? null : new Actor[g.size()];
+        this.coinMap = large ? new java.util.HashMap<>() : null;
+        this.actorMap = large ? new java.util.HashMap<>() : null;
+    }
+
+    private void setCoin(int idx, Stage.Coin c) {
+        if (coins != null) coins[idx] = c;
+        else if (c != null) coinMap.put(idx, c);
+        else coinMap.remove(idx);
+    }
+
+    private Actor head(int idx) { return actors != null ? actors[idx] : actorMap.get(idx); }
+
+    private void setHead(int idx, Actor a) {
+        if (actors != null) actors[idx] = a;
+        else if (a != null) actorMap.put(idx, a);
+        else actorMap.remove(idx);
+    }
+
+    // --- coins ---
+
+    public Stage.Coin coinAt(int idx) { return coins != null ? coins[idx] : coinMap.get(idx); }
+    public boolean hasCoin(int idx) { return coinAt(idx) != null; }
+    void putCoin(Stage.Coin c) {
+        int idx = g.index(c.at);
+        setCoin(idx, c);
+        if (free != null) free.remove(idx);
+    }
+
+    void removeCoin(Stage.Coin c) {
+        int idx = g.index(c.at);
+        setCoin(idx, null);
+        vacated(idx);
+    }
+
+    // idx may have become empty
+    private void vacated(int idx) {
+        if (free != null && coinAt(idx) == null && head(idx) == null) free.add(idx);
+    }
+
+    // --- actors ---
+
+    /** First actor on tile idx (follow Actor.nextOnTile for the rest), or null. */
+    public Actor actorsAt(int idx) { return head(idx); }
+
+    /** First actor on tile idx that matches, or null. */
+    public Actor find(int idx, Predicate<Actor> p) {
+        for (Actor a = head(idx); a != null; a = a.nextOnTile) if (p.test(a)) return a;
+        return null;
+    }
+
+    /** Start tracking a (at a.loc); from now on a's moves update the index. */
+    void add(Actor a) {
+        a.occupancy = this;
+        link(a, g.index(a.loc));
+    }
+
+    void remove(Actor a) {
+        unlink(a, g.index(a.loc));
+        a.occupancy = null;
+    }
+
+    /** Called by Actor.moveTo() before a.loc changes. */
+    void move(Actor a, Cell from, Cell to) {
+        if (from == to) return;
+        unlink(a, g.index(from));
+        link(a, g.index(to));
+    }
+
+    private void link(Actor a, int idx) {
+        a.nextOnTile = head(idx);
+        setHead(idx, a);
+        if (free != null) free.remove(idx);
+    }
+
+    private void unlink(Actor a, int idx) {
+        Actor p = head(idx);
+        if (p == a) {
+            setHead(idx, a.nextOnTile);
+        } else {
+            while (p != null && p.nextOnTile != a) p = p.nextOnTile;
+            if (p == null) return;
+            p.nextOnTile = a.nextOnTile;
+        }
+        a.nextOnTile = null;
+        vacated(idx);
+    }
+
+    // --- radius queries ---
+
+    /** The matching actor closest to centre (Manhattan, at most r tiles away), or null. */
+    public Actor nearest(Cell centre, int r, Predicate<Actor> p) {
+        for (int d = 0; d <= r; d++) {
+            Actor a = ring(centre, d, p, null);
+            if (a != null) return a;
+        }
+        return null;
+    }
+
+    /** Add every matching actor within r tiles of centre to out; returns how many were added. */
+    public int within(Cell centre, int r, Predicate<Actor> p, List<Actor> out) {
+        int before = out.size();
+        for (int d = 0; d <= r; d++) ring(centre, d, p, out);
+        return out.size() - before;
+    }
+
+    // the tiles exactly d away: the first match, or (with out) all of them added to out
+    private Actor ring(Cell centre, int d, Predicate<Actor> p, List<Actor> out) {
+        for (int dc = -d; dc <= d; dc++) {
+            int c = centre.col + dc, rest = d - Math.abs(dc);
+            if (c < 0 || c >= g.cols) continue;
+            for (int k = 0; k < (rest == 0 ? 1 : 2); k++) {
+                int r = centre.row + (k == 0 ? -rest : rest);
+                if (r < 0 || r >= g.rows) continue;
+                for (Actor a = head(g.index(c, r)); a != null; a = a.nextOnTile) {
+                    if (!p.test(a)) continue;
+                    if (out == null) return a;
+                    out.add(a);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -1,27 +1,130 @@
-import java.util.*;
+import java.util.Arrays;
 
+/**
+ * PathFind – breadth-first search on the packed grid.
+ *
+ * A PathFind is a reusable search context for one Grid: the parent and queue
+ * arrays are allocated once, and visited marks are generation-stamped, so a
+ * new search just bumps the generation instead of clearing anything. After
+ * the first call a search allocates nothing. Neighbours are found with index
+ * arithmetic on the terrain array rather than Cell objects.
+ *
+ * On a large grid the per-tile marks are TileInts, so only the chunks a
+ * search has been through take heap, and a search gives up as unreachable
+ * once it has reached Grid.LARGE_SEARCH tiles.
+ *
+ * A context is not thread-safe; Grid.pathFind() hands out one per grid, and
+ * each match runs on a single thread.
+ */
 public class PathFind {
+    private static final int RIGHT = 1, LEFT = 2, DOWN = 4, UP = 8;
+
+    private final Grid g;
+    private final byte[] edges;    // per tile: which of right/left/down/up exist (saves a division per node; null on a large grid)
+    private final TileInts parent;
+    private final TileInts seen;   // seen[i] == gen means i was reached in the current search
+    private int[] queue;
+    private final int limit;       // tiles a search may reach
+    private int gen = 0;
+    private int tail;
+
+    public PathFind(Grid g) {
+        this.g = g;
+        this.parent = new TileInts(g, 0);
+        this.seen = new TileInts(g, 0);
+        if (g.isLarge()) {
+            limit = Grid.LARGE_SEARCH;
+            queue = new int[1024];
+            edges = null;
+            return;
+        }
+        limit = g.size();
+        queue = new int[g.size()];
+        edges = new byte[g.size()];
+        for (int i = 0; i < edges.length; i++) edges[i] = (byte) edgesOf(i);
+    }
+
+    /**
+     * Compatibility wrapper used by the actors: next Cell on a shortest path, or
+     * start if unreachable. Long-range queries on big maps go through the
+     * grid's HPAStar cluster graph instead of flooding the whole map (a large
+     * one has no cluster graph; there the search is bounded instead).
+     */
     public static Cell nextStepBFS(Grid g, Actor a, Cell start, Cell goal) {
         if (start == goal) return start;
+        int mask = Grid.passMaskFor(a);
+        if (!g.components(mask).connected(g, start, goal)) return start; // walled off: don't flood the region
+        int step;
+        if (g.size() >= HPAStar.MIN_TILES && !g.isLarge() && g.manhattan(start, goal) > HPAStar.CLUSTER) {
+            step = g.hierarchy(mask).nextStep(g.index(start), g.index(goal));
+        } else {
+            step = g.pathFind().nextStep(g.index(start), g.index(goal), mask);
+        }
+        return g.cellAt(step);
+    }
+
+    /**
+     * First tile on a shortest 4-connected path from start to goal through tiles
+     * passable under mask, or start if the goal cannot be reached.
+     */
+    public int nextStep(int start, int goal, int mask) {
+        if (start == goal || !search(start, goal, mask)) return start;
+        int step = goal;
+        while (parent.get(step) != start) step = parent.get(step);
+        return step;
+    }
 
-        Map<Cell, Cell> parent = new HashMap<>();
-        ArrayDeque<Cell> q = new ArrayDeque<>();
-        q.add(start); parent.put(start, null);
-
-        while (!q.isEmpty()) {
-            Cell cur = q.removeFirst();
-            for (Cell nb : g.neighbors(cur)) {
-                if (parent.containsKey(nb)) continue;
-                if (g.isBlockedFor(a, nb)) continue;
-                parent.put(nb, cur);
-                if (nb == goal) {
-                    Cell step = nb, prev = parent.get(step);
-                    while (prev != null && prev != start) { step = prev; prev = parent.get(step); }
-                    return step;
-                }
-                q.addLast(nb);
-            }
+    /** Every tile of a shortest path, start and goal included, or null if the goal cannot be reached. */
+    public int[] path(int start, int goal, int mask) {
+        if (start == goal) return new int[]{ start };
+        if (!search(start, goal, mask)) return null;
+        int n = 1;
+        for (int t = goal; t != start; t = parent.get(t)) n++;
+        int[] path = new int[n];
+        for (int t = goal; n > 0; t = parent.get(t)) path[--n] = t;
+        return path;
+    }
+
+    // leaves a shortest path in parent, from goal back to start; false if there is none
+    private boolean search(int start, int goal, int mask) {
+        if (++gen == Integer.MAX_VALUE) { seen.reset(); gen = 1; }
+
+        final int cols = g.cols;
+        int head = 0;
+        tail = 0;
+        queue[tail++] = start;
+        seen.set(start, gen);
+        parent.set(start, -1);
+
+        while (head < tail && tail < limit) {
+            int cur = queue[head++];
+            int e = edges != null ? edges[cur] : edgesOf(cur);
+            // same neighbour order as Grid.neighbors: right, left, down, up
+            if ((e & RIGHT) != 0 && visit(cur + 1, cur, goal, mask))    return true;
+            if ((e & LEFT) != 0 && visit(cur - 1, cur, goal, mask))     return true;
+            if ((e & DOWN) != 0 && visit(cur + cols, cur, goal, mask))  return true;
+            if ((e & UP) != 0 && visit(cur - cols, cur, goal, mask))    return true;
         }
-        return start;
+        return false;
+    }
+
+    private int edgesOf(int i) {
+        int c = g.colOf(i), r = g.rowOf(i), e = 0;
+        if (c + 1 < g.cols) e |= RIGHT;
+        if (c > 0)          e |= LEFT;
+        if (r + 1 < g.rows) e |= DOWN;
+        if (r > 0)          e |= UP;
+        return e;
+    }
+
+    /** Mark nb as reached from cur and queue it; returns true when nb is the goal. */
+    private boolean visit(int nb, int cur, int goal, int mask) {
+        if (seen.get(nb) == gen || !g.passable(nb, mask)) return false;
+        seen.set(nb, gen);
+        parent.set(nb, cur);
+        if (nb == goal) return true;
+        if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+        queue[tail++] = nb;
+        return false;
     }
-}
\ No newline at end of file
+}
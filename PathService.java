@@ -0,0 +1,200 @@
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PathService – path queries that do not stall Stage.tick().
+ *
+ * Actors ask for a next step through nextStep() (shortest path) or
+ * chaseStep() (fastest path in ticks, with the actor's river cost). In
+ * synchronous mode (the default, used headless) that is a search on the
+ * simulation thread. In asynchronous mode every requester has one route
+ * instead: a query for the whole path from where it stands to its goal goes
+ * to a shared worker pool, and once the path is back the requester follows it
+ * tile by tile for as long as it stands on it. A new query is sent when the
+ * goal moves or the requester strays from its route, and until a route
+ * applies the requester steps greedily toward the goal.
+ *
+ * beginTick() collects only the searches that have finished; a late one stays
+ * pending for a later tick, so the simulation never waits for a worker. Which
+ * search finished on which tick is the one thing thread timing decides, so it
+ * is recorded in the MatchLog, and a replay hands the same paths over on the
+ * same ticks (searching on its own thread) instead of using the pool.
+ *
+ * Workers never touch Cell objects or live actors (Grid creates Cells lazily
+ * and is not thread-safe): a query carries the mask and swim delay it was
+ * made with, and each worker thread has its own PathFind and AStar per grid.
+ */
+public class PathService {
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+                Thread t = new Thread(r, "path-worker");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** One requester's route: the path it follows and the query in flight, if any. */
+    private static final class Route {
+        int start = -1, goal = -1, mask, swimDelay; // the last query sent (swimDelay -1: shortest path)
+        int[] path;                                  // its answer, start to goal; null if none (yet)
+        int cursor;                                  // where the requester was last seen on path
+        int seq = -1;                                // the query in flight, or -1
+        Future<int[]> future;                        // its search (null when replaying)
+    }
+
+    /** Search scratch for one thread. */
+    private static final class Context {
+        PathFind bfs;
+        AStar aStar;
+    }
+
+    private final Grid grid;
+    private final boolean async;
+    private final MatchLog log;     // async: where deliveries are recorded
+    private final MatchLog replay;  // async replay: where deliveries are read from (null otherwise)
+    private final ThreadLocal<Context> context = ThreadLocal.withInitial(Context::new);
+
+    private final Map<Object, Route> routes = new IdentityHashMap<>();
+    private final Map<Integer, Route> pending = new LinkedHashMap<>(); // by seq, oldest first
+    private int replayed;  // deliveries of the replayed log handed over so far
+    private int submitted, delivered, followed, fallbacks;
+
+    public PathService(Grid grid, boolean async, MatchLog log, MatchLog replay) {
+        this.grid = grid;
+        this.async = async;
+        this.log = log;
+        this.replay = async ? replay : null;
+    }
+
+    public boolean isAsync() { return async; }
+
+    /** Called once at the start of every tick: hand over every search that has finished. */
+    public void beginTick(int tick) {
+        if (!async) return;
+        if (replay != null) {
+            for (; replayed < replay.pathDeliveries() && replay.pathDeliveryTick(replayed) == tick; replayed++) {
+                Route r = pending.remove(replay.pathDeliverySeq(replayed));
+                if (r != null) deliver(r, search(r.start, r.goal, r.mask, r.swimDelay), tick);
+            }
+            return;
+        }
+        for (Iterator<Route> it = pending.values().iterator(); it.hasNext(); ) {
+            Route r = it.next();
+            if (!r.future.isDone()) continue; // still searching: try again next tick
+            it.remove();
+            int[] path = null;
+            try {
+                path = r.future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                // a failed search is treated as "no path"; the requester keeps its fallback
+            }
+            deliver(r, path, tick);
+        }
+    }
+
+    private void deliver(Route r, int[] path, int tick) {
+        if (log != null) log.recordPathDelivery(tick, r.seq);
+        r.path = path;
+        r.cursor = 0;
+        r.seq = -1;
+        r.future = null;
+        delivered++;
+    }
+
+    /** Next Cell on a shortest path from start toward goal for actor a (start itself if there is no step yet). */
+    public Cell nextStep(Actor a, Cell start, Cell goal) {
+        if (!async || start == goal) return PathFind.nextStepBFS(grid, a, start, goal);
+        int mask = Grid.passMaskFor(a);
+        int s = grid.index(start), g = grid.index(goal);
+        if (!grid.components(mask).connected(grid, s, g)) return start; // never queue an impossible search
+        return grid.cellAt(step(a, s, g, mask, -1));
+    }
+
+    /** Next tile on a path from start to goal that is fastest in ticks for actor a, who is slowed in rivers. */
+    public int chaseStep(Actor a, int start, int goal) {
+        int mask = Grid.passMaskFor(a);
+        if (!async) return grid.aStar().nextStep(start, goal, TerrainCost.fixed(mask, a.swimDelayTicks()), Heuristic.MANHATTAN);
+        if (start == goal) return start;
+        return step(a, start, goal, mask, a.swimDelayTicks());
+    }
+
+    private int step(Object requester, int s, int g, int mask, int swimDelay) {
+        Route r = routes.computeIfAbsent(requester, k -> new Route());
+        boolean same = r.mask == mask && r.swimDelay == swimDelay;
+        int next = same ? follow(r, s) : -1;
+        if (next >= 0) followed++;
+        if (r.seq < 0 && (next < 0 || r.goal != g)) {
+            if (next < 0 && same && r.path == null && r.start == s && r.goal == g) return s; // asked already: no path
+            submit(r, s, g, mask, swimDelay);
+        }
+        if (next >= 0) return next;
+        fallbacks++;
+        return greedyStep(s, g, mask);
+    }
+
+    /** The tile after s on r's path, or the furthest path tile next to s; -1 if the path does not pass by. */
+    private int follow(Route r, int s) {
+        int[] p = r.path;
+        if (p == null) return -1;
+        for (int i = r.cursor; i < p.length - 1; i++) {
+            if (p[i] == s) { r.cursor = i; return p[i + 1]; }
+        }
+        for (int i = p.length - 1; i > r.cursor; i--) { // strayed one tile: step back onto it
+            if (manhattan(p[i], s) == 1) { r.cursor = i; return p[i]; }
+        }
+        return -1;
+    }
+
+    private void submit(Route r, int s, int g, int mask, int swimDelay) {
+        if (r.mask != mask || r.swimDelay != swimDelay) r.path = null; // a route for other costs
+        r.start = s; r.goal = g; r.mask = mask; r.swimDelay = swimDelay;
+        r.seq = submitted++;
+        if (replay == null) r.future = POOL.submit(() -> search(s, g, mask, swimDelay));
+        pending.put(r.seq, r);
+    }
+
+    // runs on a worker (or the simulation thread when replaying)
+    private int[] search(int s, int g, int mask, int swimDelay) {
+        Context c = context.get();
+        if (swimDelay < 0) {
+            if (c.bfs == null) c.bfs = new PathFind(grid);
+            return c.bfs.path(s, g, mask);
+        }
+        if (c.aStar == null) c.aStar = new AStar(grid);
+        return c.aStar.path(s, g, TerrainCost.fixed(mask, swimDelay), Heuristic.MANHATTAN);
+    }
+
+    // neighbour that closes the Manhattan gap the most, or s if none is open
+    private int greedyStep(int s, int g, int mask) {
+        int best = s, bestD = manhattan(s, g);
+        int c = grid.colOf(s), r = grid.rowOf(s);
+        int[] cand = {
+            c + 1 < grid.cols ? s + 1 : -1,
+            c > 0 ? s - 1 : -1,
+            r + 1 < grid.rows ? s + grid.cols : -1,
+            r > 0 ? s - grid.cols : -1
+        };
+        for (int nb : cand) {
+            if (nb < 0 || !grid.passable(nb, mask)) continue;
+            int d = manhattan(nb, g);
+            if (d < bestD) { bestD = d; best = nb; }
+        }
+        return best;
+    }
+
+    private int manhattan(int a, int b) {
+        return Math.abs(grid.colOf(a) - grid.colOf(b)) + Math.abs(grid.rowOf(a) - grid.rowOf(b));
+    }
+
+    @Override
+    public String toString() {
+        return "PathService[" + (async ? replay != null ? "async replay" : "async" : "sync") + ", submitted " + submitted
+                + ", delivered " + delivered + ", followed " + followed + ", fallbacks " + fallbacks + "]";
+    }
+}
@@ -0,0 +1,476 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Population – many Cat-, Dog- and Bird-like agents on one Stage, stored as
+ * parallel primitive arrays instead of one Actor object each.
+ *
+ * Agent i is pos[i] (tile index), species[i], bites[i], alive[i], cooldown[i]
+ * and swimTick[i]; nothing else is kept per agent, so 100k agents cost a few
+ * megabytes and no garbage. Each species behaves as follows:
+ *   PREY   – flee when a hunter is within THREAT tiles, else walk down the
+ *            Stage's coin field; picks up coins (like the AI Cat)
+ *   HUNTER – walk down the distance field to the nearest prey and catch prey
+ *            on its tile; picks up coins (like the AI Dog)
+ *   RIVER  – swim toward prey within SIGHT that are in the river, else drift
+ *            along it; bites prey and hunters sharing its river tile and
+ *            pushes them ashore, two bites kill (like the Bird)
+ * Instead of each hunter searching for its own target, the distances to the
+ * nearest prey and to the nearest hunter are two multi-source BFS floods per
+ * tick, cut off at SIGHT and THREAT + 1 tiles; every agent then just compares
+ * its four neighbours. Bitten prey and hunters swim at half speed, as in the classic
+ * game. update() decides every agent's move in parallel and then resolves
+ * them in a fixed order (see there), with a counter-based random number per
+ * agent and tick instead of the Stage's shared Random, so a run gives the
+ * same result on any number of threads.
+ *
+ * Agents on the same tile are linked through tileHead/tileNext/tilePrev, so
+ * catches and bites only look at one tile. The population is independent of
+ * the Stage's Cat, Dog and Bird and of how a match ends; it is headless only
+ * (the window does not draw it). A Stage with `crowd` set builds one per match
+ * (see spawnCrowd()) with respawn on, so dead agents come back on a random
+ * tile the same tick and the crowd stays at full size.
+ *
+ * Usage: java -cp out Population [agents] [size] [threads]
+ *        java -cp out Population --verify [agents] [size]
+ *   --verify runs the same crowd on 1, 2, 3 and 8 threads and checks that
+ *   every tick ends in the same state (exit status 1 if not)
+ */
+public class Population {
+    static final byte PREY = 0, HUNTER = 1, RIVER = 2;
+    static final int SIGHT = 12, THREAT = 3;
+    static final int PREY_DELAY = 2, HUNTER_DELAY = 1, RIVER_DELAY = 1, BITE_COOLDOWN = 6;
+    private static final int FAR = Integer.MAX_VALUE;
+    private static final int STAY = -1, IDLE = -2; // intents besides a target tile: acts in place / on cooldown
+    static final int CHUNK = 4096; // agents decided per parallel task
+
+    private final Grid g;
+    private final byte[] terrain; // a copy of g's, so the hot loops never go through terrainAt()
+    private int count;
+    int[] pos = new int[16];
+    byte[] species = new byte[16];
+    byte[] bites = new byte[16];
+    boolean[] alive = new boolean[16];
+    short[] cooldown = new short[16];
+    byte[] swimTick = new byte[16];
+    private int[] tileNext = new int[16], tilePrev = new int[16];
+    private final int[] tileHead;      // first agent on each tile, or -1
+    private int[] target = new int[16]; // this tick's intent per agent (phase 1 output)
+
+    private final long seed;
+    private int tick;
+    ForkJoinPool pool; // where decide() runs in parallel; null = the common pool
+    boolean respawn;   // bring dead agents back at the end of each tick
+
+    // distance fields, rebuilt each tick; only tiles within SIGHT of a source are written,
+    // and each field's BFS queue still lists those tiles afterwards so the next flood resets just them
+    private final int[] toPrey, toHunter;
+    private final int[] preyQueue, hunterQueue;
+    private int preyTouched, hunterTouched;
+    private final int[] sources;
+
+    int preyCoins, hunterCoins, caught, bitten;
+
+    public Population(Grid g, long seed) {
+        this.g = g;
+        this.seed = seed;
+        terrain = new byte[g.size()];
+        for (int i = 0; i < terrain.length; i++) terrain[i] = g.terrainAt(i);
+        tileHead = new int[g.size()];
+        Arrays.fill(tileHead, -1);
+        toPrey = new int[g.size()];
+        toHunter = new int[g.size()];
+        Arrays.fill(toPrey, FAR);
+        Arrays.fill(toHunter, FAR);
+        preyQueue = new int[g.size()];
+        hunterQueue = new int[g.size()];
+        sources = new int[g.size()];
+    }
+
+    public int size() { return count; }
+
+    public int alive(byte sp) {
+        int n = 0;
+        for (int i = 0; i < count; i++) if (alive[i] && species[i] == sp) n++;
+        return n;
+    }
+
+    /** Add an agent of species sp on tile idx; returns its number. */
+    public int add(byte sp, int idx) {
+        if (count == pos.length) grow(count * 2);
+        int i = count++;
+        pos[i] = idx;
+        species[i] = sp;
+        bites[i] = 0;
+        alive[i] = true;
+        cooldown[i] = 0;
+        swimTick[i] = 0;
+        link(i, idx);
+        return i;
+    }
+
+    /**
+     * Add n agents of species sp on random tiles: river tiles for RIVER, coin-free reachable ones otherwise
+     * (on a large grid both are drawn near the Cat).
+     */
+    public void spawn(Stage s, byte sp, int n) {
+        for (int k = 0; k < n; k++) {
+            int idx = sp == RIVER ? g.riverRoutes().randomTile(s.rng, g.index(s.cat.location())) : s.freeCells.sample(s.rng);
+            if (idx < 0) return;
+            add(sp, idx);
+        }
+    }
+
+    /** Add `agents` agents in the usual mix: 60% prey, 30% hunters, 10% river predators. */
+    public void spawnCrowd(Stage s, int agents) {
+        spawn(s, PREY, agents * 6 / 10);
+        spawn(s, HUNTER, agents * 3 / 10);
+        spawn(s, RIVER, agents - agents * 6 / 10 - agents * 3 / 10);
+    }
+
+    private void grow(int cap) {
+        pos = Arrays.copyOf(pos, cap);
+        species = Arrays.copyOf(species, cap);
+        bites = Arrays.copyOf(bites, cap);
+        alive = Arrays.copyOf(alive, cap);
+        cooldown = Arrays.copyOf(cooldown, cap);
+        swimTick = Arrays.copyOf(swimTick, cap);
+        tileNext = Arrays.copyOf(tileNext, cap);
+        tilePrev = Arrays.copyOf(tilePrev, cap);
+        target = Arrays.copyOf(target, cap);
+    }
+
+    // --- per-tile lists ---
+
+    private void link(int i, int idx) {
+        int h = tileHead[idx];
+        tileNext[i] = h;
+        tilePrev[i] = -1;
+        if (h >= 0) tilePrev[h] = i;
+        tileHead[idx] = i;
+    }
+
+    private void unlink(int i, int idx) {
+        int p = tilePrev[i], n = tileNext[i];
+        if (p >= 0) tileNext[p] = n; else tileHead[idx] = n;
+        if (n >= 0) tilePrev[n] = p;
+    }
+
+    private void moveTo(int i, int idx) {
+        if (pos[i] == idx) return;
+        unlink(i, pos[i]);
+        link(i, idx);
+        pos[i] = idx;
+    }
+
+    private void kill(int i) {
+        alive[i] = false;
+        unlink(i, pos[i]);
+    }
+
+    // --- the tick ---
+
+    /**
+     * One tick in two phases. decide() works out every live agent's move from
+     * the state at the start of the tick only, writing nothing but that
+     * agent's own target/cooldown/swimTick, so agents are decided in parallel
+     * (in chunks of CHUNK, on `pool` or the common pool). resolve() then
+     * applies the moves on this thread in a fixed order – prey, hunters,
+     * river predators, each by agent number – so contested coins, catches and
+     * bites come out the same whatever the thread count.
+     */
+    public void update(Stage s) {
+        buildFields();
+        CoinField coins = s.coinField(); // brought up to date here; decide() only reads it
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        IntStream ids = chunks > 1 ? IntStream.range(0, chunks).parallel() : IntStream.range(0, 1); // a small crowd is not worth the pool
+        Runnable decideAll = () -> ids.forEach(k -> {
+            for (int i = k * CHUNK, end = Math.min(count, i + CHUNK); i < end; i++) decide(coins, i);
+        });
+        if (pool != null && chunks > 1) pool.submit(decideAll).join(); else decideAll.run();
+
+        for (int i = 0; i < count; i++) if (species[i] == PREY) resolvePrey(s, i);
+        for (int i = 0; i < count; i++) if (species[i] == HUNTER) resolveHunter(s, i);
+        for (int i = 0; i < count; i++) if (species[i] == RIVER) resolveRiver(i);
+        if (respawn) respawnDead(s);
+        tick++;
+    }
+
+    // every dead agent starts over on a random tile, in agent order (draws from s.rng like spawn())
+    private void respawnDead(Stage s) {
+        for (int i = 0; i < count; i++) {
+            if (alive[i]) continue;
+            int idx = species[i] == RIVER ? g.riverRoutes().randomTile(s.rng, g.index(s.cat.location())) : s.freeCells.sample(s.rng);
+            if (idx < 0) continue;
+            pos[i] = idx;
+            bites[i] = 0;
+            alive[i] = true;
+            cooldown[i] = 0;
+            swimTick[i] = 0;
+            link(i, idx);
+        }
+    }
+
+    // phase 1: agent i's intent from the tick-start state (target tile, STAY, or IDLE)
+    private void decide(CoinField coins, int i) {
+        if (!alive[i]) { target[i] = IDLE; return; }
+        if (cooldown[i] > 0) { cooldown[i]--; target[i] = IDLE; return; }
+        int p = pos[i], next;
+        switch (species[i]) {
+            case PREY:
+                next = toHunter[p] <= THREAT ? best(p, toHunter, false, Grid.SWIMMER_MASK) : coins.nextStep(p);
+                if (next < 0) next = wander(p, i, Grid.SWIMMER_MASK);
+                target[i] = canStep(i, next) ? next : STAY;
+                if (target[i] >= 0) cooldown[i] = PREY_DELAY;
+                break;
+            case HUNTER:
+                next = toPrey[p] != FAR ? best(p, toPrey, true, Grid.SWIMMER_MASK) : -1;
+                if (next < 0) next = wander(p, i, Grid.SWIMMER_MASK);
+                target[i] = canStep(i, next) ? next : STAY;
+                if (target[i] >= 0) cooldown[i] = HUNTER_DELAY;
+                break;
+            default:
+                next = toPrey[p] != FAR ? best(p, toPrey, true, Grid.RIVER_MASK) : -1;
+                if (next < 0) next = wander(p, i, Grid.RIVER_MASK);
+                target[i] = next >= 0 ? next : STAY;
+                cooldown[i] = RIVER_DELAY;
+        }
+    }
+
+    // phase 2, in agent order: moves first, then what happens on the tile moved to
+
+    private void resolvePrey(Stage s, int i) {
+        if (target[i] == IDLE || !alive[i]) return;
+        if (target[i] >= 0) moveTo(i, target[i]);
+        if (catchAt(pos[i]) > 0) return; // walked onto a hunter, busy or not
+        if (pickCoin(s, pos[i])) preyCoins++;
+    }
+
+    private void resolveHunter(Stage s, int i) {
+        if (target[i] == IDLE || !alive[i]) return;
+        if (target[i] >= 0) moveTo(i, target[i]);
+        catchAt(pos[i]);
+        if (pickCoin(s, pos[i])) hunterCoins++;
+    }
+
+    private void resolveRiver(int i) {
+        if (target[i] == IDLE || !alive[i]) return;
+        if (target[i] >= 0) moveTo(i, target[i]);
+        boolean bit = false;
+        for (int j = tileHead[pos[i]]; j >= 0; ) {
+            int n = tileNext[j];
+            if (species[j] != RIVER) {
+                bit = true;
+                bitten++;
+                if (++bites[j] >= 2) kill(j);
+                else { pushAshore(j); catchAt(pos[j]); }
+            }
+            j = n;
+        }
+        if (bit) cooldown[i] = BITE_COOLDOWN;
+    }
+
+    /**
+     * If a hunter stands on tile idx, catch every prey there and return how
+     * many. Catches go by who shares the tile, not by who moved, so a prey that
+     * walks (or is pushed) onto a hunter waiting out its cooldown is caught too.
+     */
+    private int catchAt(int idx) {
+        int j = tileHead[idx];
+        while (j >= 0 && species[j] != HUNTER) j = tileNext[j];
+        if (j < 0) return 0;
+        int n = 0;
+        for (j = tileHead[idx]; j >= 0; ) { // only live agents are on the lists
+            int next = tileNext[j];
+            if (species[j] == PREY) { kill(j); n++; }
+            j = next;
+        }
+        caught += n;
+        return n;
+    }
+
+    /** Whether i may step to next (if any) this tick, with the swim slowdown for bitten agents. */
+    private boolean canStep(int i, int next) {
+        if (next < 0) return false;
+        if (bites[i] >= 1 && terrain[next] == Grid.RIVER) {
+            swimTick[i] ^= 1;
+            if (swimTick[i] != 0) return false;
+        }
+        return true;
+    }
+
+    private void pushAshore(int j) {
+        int p = pos[j], c = g.colOf(p), r = g.rowOf(p);
+        for (int d = 0; d < 4; d++) {
+            int nb = neighbour(p, c, r, d);
+            if (nb >= 0 && passable(nb, Grid.WALKER_MASK)) { moveTo(j, nb); return; }
+        }
+    }
+
+    private boolean pickCoin(Stage s, int idx) {
+        Stage.Coin c = s.occupancy.coinAt(idx);
+        if (c == null) return false;
+        s.removeCoin(c);
+        return true;
+    }
+
+    // neighbour of p (in mask) with the lowest (or highest) field value, or -1 if none improves on p
+    private int best(int p, int[] field, boolean lowest, int mask) {
+        int bestIdx = -1;
+        long bestD = field[p];
+        int c = g.colOf(p), r = g.rowOf(p);
+        for (int d = 0; d < 4; d++) {
+            int nb = neighbour(p, c, r, d);
+            if (nb < 0 || !passable(nb, mask)) continue;
+            long v = field[nb];
+            if (lowest ? v < bestD : v > bestD) { bestD = v; bestIdx = nb; }
+        }
+        return bestIdx;
+    }
+
+    private int wander(int p, int i, int mask) {
+        int start = rand(i, 4), c = g.colOf(p), r = g.rowOf(p);
+        for (int k = 0; k < 4; k++) {
+            int nb = neighbour(p, c, r, (start + k) & 3);
+            if (nb >= 0 && passable(nb, mask)) return nb;
+        }
+        return -1;
+    }
+
+    /**
+     * Counter-based random number in [0, bound) for agent i this tick: a hash
+     * of (seed, tick, i), so it does not depend on which thread asks or in
+     * what order, the way a shared Random would.
+     */
+    private int rand(int i, int bound) {
+        long h = WorldGen.mix(seed ^ WorldGen.mix(((long) tick << 32) ^ (i & 0xffffffffL)));
+        return (int) ((h >>> 1) % bound);
+    }
+
+    private boolean passable(int idx, int mask) { return ((mask >> terrain[idx]) & 1) != 0; }
+
+    // neighbour d of tile p at (c, r): 0 right, 1 left, 2 down, 3 up; -1 off the map
+    private int neighbour(int p, int c, int r, int d) {
+        switch (d) {
+            case 0:  return c + 1 < g.cols ? p + 1 : -1;
+            case 1:  return c > 0 ? p - 1 : -1;
+            case 2:  return r + 1 < g.rows ? p + g.cols : -1;
+            default: return r > 0 ? p - g.cols : -1;
+        }
+    }
+
+    // --- distance fields ---
+
+    private void buildFields() {
+        preyTouched = flood(PREY, toPrey, preyQueue, preyTouched, SIGHT);
+        hunterTouched = flood(HUNTER, toHunter, hunterQueue, hunterTouched, THREAT + 1); // prey only look this far
+    }
+
+    /**
+     * Multi-source BFS from every live agent of species sp over swimmer-
+     * passable tiles, up to `limit` steps. First resets the `touched` tiles the
+     * previous flood left listed in queue; returns how many this one wrote.
+     */
+    private int flood(byte sp, int[] dist, int[] queue, int touched, int limit) {
+        for (int k = 0; k < touched; k++) dist[queue[k]] = FAR;
+        int n = 0;
+        for (int i = 0; i < count; i++) if (alive[i] && species[i] == sp) sources[n++] = pos[i];
+        int tail = 0;
+        for (int k = 0; k < n; k++) {
+            int idx = sources[k];
+            if (dist[idx] == 0) continue;
+            dist[idx] = 0;
+            queue[tail++] = idx;
+        }
+        int cols = g.cols, rows = g.rows;
+        for (int head = 0; head < tail; head++) {
+            int cur = queue[head], nd = dist[cur] + 1;
+            if (nd > limit) continue;
+            int c = cur % cols, r = cur / cols;
+            if (c + 1 < cols) tail = relax(dist, queue, cur + 1, nd, tail);
+            if (c > 0)        tail = relax(dist, queue, cur - 1, nd, tail);
+            if (r + 1 < rows) tail = relax(dist, queue, cur + cols, nd, tail);
+            if (r > 0)        tail = relax(dist, queue, cur - cols, nd, tail);
+        }
+        return tail;
+    }
+
+    private int relax(int[] dist, int[] queue, int nb, int nd, int tail) {
+        if (nd >= dist[nb] || terrain[nb] == Grid.TREE) return tail;
+        dist[nb] = nd;
+        queue[tail++] = nb;
+        return tail;
+    }
+
+    // a Stage of size x size with a respawning crowd of `agents`, deciding on `threads` threads
+    private static Stage crowdStage(int agents, int size, int threads) {
+        Stage s = new Stage();
+        s.mapCols = s.mapRows = size;
+        s.keepCoins = agents / 10;
+        s.crowd = agents;
+        s.startMatch("AI", 1);
+        s.population.pool = new ForkJoinPool(threads);
+        return s;
+    }
+
+    /** Hash of every agent's state and the counters after each of `ticks` ticks. */
+    static long stateHash(int agents, int size, int threads, int ticks) {
+        Stage s = crowdStage(agents, size, threads);
+        Population pop = s.population;
+        long h = 0;
+        for (int t = 0; t < ticks; t++) {
+            pop.update(s);
+            s.spawnCoins(s.keepCoins);
+            for (int i = 0; i < pop.size(); i++)
+                h = h * 31 + pop.pos[i] * 7L + (pop.alive[i] ? 1 : 0) + pop.bites[i] * 3 + pop.cooldown[i];
+            h = h * 31 + pop.caught + pop.bitten * 5L + pop.preyCoins * 11L + pop.hunterCoins * 13L;
+        }
+        pop.pool.shutdown();
+        return h;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        boolean verify = args.length > 0 && args[0].equals("--verify");
+        if (verify) args = Arrays.copyOfRange(args, 1, args.length);
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : verify ? 30_000 : 100_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : verify ? 512 : 1024;
+        if (verify) {
+            long first = 0;
+            boolean same = true;
+            for (int threads : new int[]{1, 2, 3, 8}) {
+                long h = stateHash(agents, size, threads, 150);
+                if (threads == 1) first = h;
+                same &= h == first;
+                System.out.printf("%d agents on %dx%d, %d threads: state hash %016x%n", agents, size, size, threads, h);
+            }
+            System.out.println(same ? "identical on every thread count" : "MISMATCH between thread counts");
+            if (!same) System.exit(1);
+            return;
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Stage s = crowdStage(agents, size, threads);
+        Population pop = s.population;
+
+        // the crowd respawns, so after warm-up every tick runs at full population
+        int warmup = 50, ticks = 200;
+        long[] ns = new long[ticks];
+        for (int t = -warmup; t < ticks; t++) {
+            long t0 = System.nanoTime();
+            pop.update(s);
+            s.spawnCoins(s.keepCoins);
+            if (t >= 0) ns[t] = System.nanoTime() - t0;
+        }
+        long total = 0, over = 0;
+        for (long n : ns) { total += n; if (n > Stage.TICK_MS * 1_000_000L) over++; }
+        Arrays.sort(ns);
+        System.out.printf("%d agents on %dx%d, %d threads, %d ticks after %d warm-up: mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms per tick%n",
+                pop.size(), size, size, threads, ticks, warmup, total / 1e6 / ticks,
+                ns[ticks / 2] / 1e6, ns[ticks * 99 / 100] / 1e6, ns[ticks - 1] / 1e6);
+        System.out.printf("%d ticks over the %d ms tick budget; alive now: prey %d, hunters %d, river %d%n",
+                over, Stage.TICK_MS, pop.alive(PREY), pop.alive(HUNTER), pop.alive(RIVER));
+        System.out.printf("caught %d, bites %d, coins prey %d / hunters %d%n",
+                pop.caught, pop.bitten, pop.preyCoins, pop.hunterCoins);
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.List;
+
+/**
+ * RenderSnapshot – what StageRenderer needs to draw one frame, copied out of
+ * a Stage on the simulation thread.
+ *
+ * The painter never reads Stage itself: the simulation captures a snapshot
+ * after each tick (and after each command from the keyboard) and publishes it
+ * through a TripleBuffer, and the painter draws whichever snapshot is newest.
+ * A snapshot is not changed after it is published; the arrays are reused
+ * when its slot comes back to the simulation, so capturing allocates nothing
+ * once they have grown to size.
+ *
+ * Cells and the Grid are shared rather than copied: a Cell's position never
+ * changes and the terrain is fixed for a match.
+ */
+public class RenderSnapshot {
+    long seq;                 // 1, 2, 3... per capture; a gap means the painter skipped some
+    boolean showStart, paused, gameOver;
+    int catCoins, dogCoins, timeLeftMs;
+    String gameMessage;
+    Grid grid;
+
+    Cell[] coins = new Cell[32];
+    int coinCount;
+
+    Actor[] actors = new Actor[4]; // identity only (sprite type); their state is in the arrays below
+    Cell[] actorAt = new Cell[4], actorFrom = new Cell[4];
+    int[] actorLook = new int[4];  // Actor.look(): sprite state, -1 when invisible
+    int actorCount;
+
+    // what changed since the previous snapshot
+    Cell[] dirty = new Cell[16];
+    int dirtyCount;
+    boolean hudDirty, allDirty;
+
+    /** Copy s into this snapshot, including its dirty regions (the caller clears those on s). */
+    void capture(Stage s, long seq) {
+        this.seq = seq;
+        showStart = s.showStart;
+        paused = s.paused;
+        gameOver = s.gameOver;
+        catCoins = s.catCoins;
+        dogCoins = s.dogCoins;
+        timeLeftMs = s.timeLeftMs;
+        gameMessage = s.gameMessage;
+        grid = s.grid;
+
+        List<Stage.Coin> cs = s.coins;
+        if (coins.length < cs.size()) coins = new Cell[cs.size() * 2];
+        coinCount = cs.size();
+        for (int i = 0; i < coinCount; i++) coins[i] = cs.get(i).at;
+        for (int i = coinCount; i < coins.length && coins[i] != null; i++) coins[i] = null;
+
+        List<Actor> as = s.actors;
+        actorCount = as.size();
+        if (actors.length < actorCount) {
+            actors = new Actor[actorCount * 2];
+            actorAt = new Cell[actors.length];
+            actorFrom = new Cell[actors.length];
+            actorLook = new int[actors.length];
+        }
+        for (int i = 0; i < actorCount; i++) {
+            Actor a = as.get(i);
+            actors[i] = a;
+            actorAt[i] = a.location();
+            actorFrom[i] = a.previousLocation();
+            actorLook[i] = a.look();
+        }
+
+        allDirty = s.allDirty();
+        hudDirty = s.hudDirty();
+        List<Cell> ds = s.dirtyCells();
+        if (dirty.length < ds.size()) dirty = new Cell[ds.size() * 2];
+        dirtyCount = allDirty ? 0 : ds.size();
+        for (int i = 0; i < dirtyCount; i++) dirty[i] = ds.get(i);
+    }
+}
@@ -1,15 +1,17 @@
 import java.awt.*;
 
 public class RiverCell extends Cell implements Obstacle {
-    public RiverCell(int x, int y) { super(x, y); }
+    private static final Color BANK = new Color(173, 216, 230), WATER = new Color(135, 206, 250);
+
+    public RiverCell(int col, int row) { super(col, row); }
 
     @Override
     public void paint(Graphics g) {
-        g.setColor(new Color(173, 216, 230));
+        g.setColor(BANK);
         g.fillRect(x, y, SIZE, SIZE);
-        g.setColor(new Color(135, 206, 250));
+        g.setColor(WATER);
         g.fillRect(x + 4, y + 4, SIZE - 8, SIZE - 8);
-        g.setColor(new Color(240, 170, 190));
+        g.setColor(EDGE);
         g.drawRect(x, y, SIZE, SIZE);
     }
 
@@ -0,0 +1,142 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * RiverRoutes – the river as its own small graph, with next-hop tables.
+ *
+ * The river never changes after a Grid is built, so river-bound actors do
+ * not need to search at all: each river tile gets a compact id, and for every
+ * destination a next-hop row (one BFS over the river only) says which tile to
+ * move to from every other river tile. Rows are filled the first time a
+ * destination is asked for, so after warm-up a Bird move is an array lookup.
+ * Only the MAX_ROWS most recently used rows are kept (a Bird heads for a few
+ * destinations at a time), so a grid kept across matches does not grow.
+ *
+ * On a large grid (Grid.isLarge()) numbering the river would read the whole
+ * map, and a row would be as long as the river, so there is no numbering: a
+ * row covers only the LARGE_RANGE x LARGE_RANGE box around its destination
+ * (in each direction), and random tiles are drawn near a given tile.
+ */
+public class RiverRoutes {
+    private final Grid g;
+    private final int[] tiles;   // river id -> grid index (null on a large grid)
+    private final TileInts idOf; // grid index -> river id, or -1 on land
+    private final int[] adj;     // 4 neighbour ids per river id (-1 = none), order right, left, down, up
+    static final int MAX_ROWS = 64;
+    static final int LARGE_RANGE = 64;
+    private final java.util.LinkedHashMap<Integer, int[]> hopTo; // dest -> row; row[src] = grid index of the next tile from src toward dest
+    private int[] boxQueue;      // large grid: BFS scratch for one box
+
+    public RiverRoutes(Grid g) {
+        this.g = g;
+        hopTo = new java.util.LinkedHashMap<Integer, int[]>(16, 0.75f, true) { // access order: eldest = least recently used
+            @Override protected boolean removeEldestEntry(java.util.Map.Entry<Integer, int[]> e) { return size() > MAX_ROWS; }
+        };
+        if (g.isLarge()) {
+            tiles = adj = null;
+            idOf = null;
+            boxQueue = new int[(2 * LARGE_RANGE + 1) * (2 * LARGE_RANGE + 1)];
+            return;
+        }
+        idOf = new TileInts(g, -1);
+        int n = 0;
+        for (int i = 0; i < g.size(); i++) if (g.isRiver(i)) idOf.set(i, n++);
+        tiles = new int[n];
+        for (int i = 0; i < g.size(); i++) if (idOf.get(i) >= 0) tiles[idOf.get(i)] = i;
+
+        adj = new int[n * 4];
+        for (int id = 0; id < n; id++) {
+            int i = tiles[id], c = g.colOf(i), r = g.rowOf(i);
+            adj[id * 4]     = c + 1 < g.cols ? idOf.get(i + 1) : -1;
+            adj[id * 4 + 1] = c > 0          ? idOf.get(i - 1) : -1;
+            adj[id * 4 + 2] = r + 1 < g.rows ? idOf.get(i + g.cols) : -1;
+            adj[id * 4 + 3] = r > 0          ? idOf.get(i - g.cols) : -1;
+        }
+    }
+
+    /**
+     * A uniformly random river tile (grid index), or -1 if there is no river.
+     * On a large grid the tile is drawn within LARGE_RANGE / 2 of near (-1 if a
+     * few draws find no river there).
+     */
+    public int randomTile(Random rng, int near) {
+        if (tiles != null) return tiles.length == 0 ? -1 : tiles[rng.nextInt(tiles.length)];
+        int r = LARGE_RANGE / 2, c0 = g.colOf(near) - r, r0 = g.rowOf(near) - r;
+        for (int tries = 0; tries < 64; tries++) {
+            int c = c0 + rng.nextInt(2 * r + 1), row = r0 + rng.nextInt(2 * r + 1);
+            if (g.inBounds(c, row) && g.isRiver(g.index(c, row))) return g.index(c, row);
+        }
+        return -1;
+    }
+
+    /**
+     * Grid index of the next river tile on a shortest river-only path from
+     * `from` to `to`, or -1 if either is not river or they are not connected.
+     */
+    public int nextHop(int from, int to) {
+        if (tiles == null) {
+            int src = boxIndex(from, to);
+            if (src < 0 || from == to || !g.isRiver(from) || !g.isRiver(to)) return -1;
+            int[] row = hopTo.get(to);
+            if (row == null) hopTo.put(to, row = buildBoxRow(to));
+            return row[src];
+        }
+        int src = idOf.get(from), dst = idOf.get(to);
+        if (src < 0 || dst < 0 || src == dst) return -1;
+        int[] row = hopTo.get(dst);
+        if (row == null) hopTo.put(dst, row = buildRow(dst));
+        return row[src];
+    }
+
+    // BFS outward from dest; whoever reaches v first is v's next hop toward dest
+    private int[] buildRow(int dst) {
+        int n = tiles.length;
+        int[] row = new int[n];
+        Arrays.fill(row, -1);
+        int[] queue = new int[n];
+        boolean[] seen = new boolean[n];
+        int head = 0, tail = 0;
+        queue[tail++] = dst;
+        seen[dst] = true;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = 0; k < 4; k++) {
+                int v = adj[u * 4 + k];
+                if (v < 0 || seen[v]) continue;
+                seen[v] = true;
+                row[v] = tiles[u];
+                queue[tail++] = v;
+            }
+        }
+        return row;
+    }
+
+    // large grid: position of tile in the box around dst, or -1 outside it
+    private int boxIndex(int tile, int dst) {
+        int dc = g.colOf(tile) - g.colOf(dst) + LARGE_RANGE, dr = g.rowOf(tile) - g.rowOf(dst) + LARGE_RANGE;
+        int w = 2 * LARGE_RANGE + 1;
+        return dc < 0 || dc >= w || dr < 0 || dr >= w ? -1 : dr * w + dc;
+    }
+
+    // the same BFS as buildRow, over the river tiles in the box around dst only
+    private int[] buildBoxRow(int dst) {
+        int[] row = new int[boxQueue.length];
+        Arrays.fill(row, -1);
+        row[boxIndex(dst, dst)] = dst; // marks dst seen; nextHop never asks for it
+        int head = 0, tail = 0;
+        boxQueue[tail++] = dst;
+        while (head < tail) {
+            int u = boxQueue[head++], c = g.colOf(u), r = g.rowOf(u);
+            int[] nbs = { c + 1 < g.cols ? u + 1 : -1, c > 0 ? u - 1 : -1,
+                          r + 1 < g.rows ? u + g.cols : -1, r > 0 ? u - g.cols : -1 };
+            for (int v : nbs) {
+                if (v < 0 || !g.isRiver(v)) continue;
+                int l = boxIndex(v, dst);
+                if (l < 0 || row[l] >= 0) continue;
+                row[l] = u;
+                boxQueue[tail++] = v;
+            }
+        }
+        return row;
+    }
+}
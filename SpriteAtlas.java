@@ -0,0 +1,109 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SpriteAtlas – actors and coins drawn once, then blitted with one drawImage.
+ *
+ * Each actor class gets one sprite per state (Actor.ALIVE, SLOWED, DEAD),
+ * rendered through the actor's own paintAt() into a translucent image of one
+ * tile. The Cat, Dog and Bird are rendered up front; any other Actor subclass
+ * is rendered the first time it shows up, from a prototype made through its
+ * (Cell) constructor, so the paint thread never reads a live actor. Sprites
+ * are drawn at `scale` device pixels per logical pixel, so on a HiDPI screen
+ * StageRenderer asks for an atlas matching the Graphics transform and the
+ * sprites stay sharp.
+ *
+ * A slowed actor's sprite is its normal one plus a small water drop.
+ */
+public class SpriteAtlas {
+    private static final Color WET = new Color(90, 160, 235);
+    private static final Cell ORIGIN = new Cell(0, 0);
+
+    public final double scale;
+    private final int px; // sprite side in device pixels
+    private final Map<Class<?>, BufferedImage[]> sprites = new HashMap<>();
+    private final BufferedImage coin;
+
+    public SpriteAtlas(double scale) {
+        this.scale = scale;
+        this.px = (int) Math.ceil(Cell.SIZE * scale);
+
+        for (Actor proto : new Actor[]{ new Cat(ORIGIN), new Dog(ORIGIN), new Bird(ORIGIN) }) {
+            for (int state = Actor.ALIVE; state <= Actor.DEAD; state++) spritesFor(proto)[state] = render(proto, state);
+        }
+
+        coin = image(px, px, Transparency.TRANSLUCENT);
+        Graphics2D g = coin.createGraphics();
+        try {
+            g.scale(scale, scale);
+            StageRenderer.paintCoin(g, 0, 0);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /** Draw a at its tile with its current state's sprite. */
+    public void draw(Graphics g, Actor a) { draw(g, a, a.spriteState(), a.loc.x, a.loc.y); }
+
+    /**
+     * Draw the sprite for a's class in the given state with its top-left corner
+     * at (x, y), e.g. part-way between two tiles. The state is passed in so a
+     * painter working from a RenderSnapshot never reads the live actor; a
+     * sprite the atlas does not have yet is rendered from a prototype.
+     */
+    public void draw(Graphics g, Actor a, int state, int x, int y) {
+        BufferedImage[] states = spritesFor(a);
+        if (states[state] == null) states[state] = render(prototype(a.getClass()), state);
+        g.drawImage(states[state], x, y, Cell.SIZE, Cell.SIZE, null);
+    }
+
+    public void drawCoin(Graphics g, Cell at) {
+        g.drawImage(coin, at.x, at.y, Cell.SIZE, Cell.SIZE, null);
+    }
+
+    private BufferedImage[] spritesFor(Actor a) {
+        return sprites.computeIfAbsent(a.getClass(), c -> new BufferedImage[Actor.DEAD + 1]);
+    }
+
+    // a fresh actor of class c at the origin; the default icon if c has no (Cell) constructor
+    private static Actor prototype(Class<? extends Actor> c) {
+        try {
+            java.lang.reflect.Constructor<? extends Actor> k = c.getDeclaredConstructor(Cell.class);
+            k.setAccessible(true);
+            return k.newInstance(ORIGIN);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new Actor() { };
+        }
+    }
+
+    // proto in the given state (proto must not be a live actor: its bites and alive are overwritten)
+    private BufferedImage render(Actor proto, int state) {
+        proto.bites = state;
+        proto.alive = state != Actor.DEAD;
+        BufferedImage img = image(px, px, Transparency.TRANSLUCENT);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.scale(scale, scale);
+            proto.paintAt(g, 0, 0);
+            if (state == Actor.SLOWED) {
+                g.setColor(WET);
+                g.fillOval(Cell.SIZE - 9, 2, 6, 8);
+            }
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    /** An image in the screen's native format when there is a screen (Java2D can then cache it in video memory). */
+    static BufferedImage image(int w, int h, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(w, h, transparency == Transparency.OPAQUE
+                    ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(w, h, transparency);
+    }
+}
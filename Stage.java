@@ -1,4 +1,3 @@
-import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -14,6 +13,11 @@ public class Stage {
     String chosenCharacter = ""; // "Cat" or "Dog"
 
     // world + actors
+    int mapCols = Grid.COLS, mapRows = Grid.ROWS; // bigger jungles work too (headless)
+    java.nio.file.Path mapPath;                    // when set, play on this MapFile instead of a generated jungle
+    private Grid mapGrid;                          // the opened map, kept across matches (its terrain never changes)
+    static final int PREFETCH_TILES = 32;          // page in map chunks this close to an actor
+    static final int LARGE_ESCAPE_RANGE = 64;      // large grid: a stuck actor picks its escape target this close
     Grid grid;
     Dog dog;
     Cat cat;
@@ -22,54 +26,151 @@ public class Stage {
     List<Updatable> updatables = new ArrayList<>();
 
     // coins
-    static class Coin { Cell at; Coin(Cell c){ at = c; } }
+    static class Coin { Cell at; int slot; Coin(Cell c){ at = c; } } // slot: index in coins
     List<Coin> coins = new ArrayList<>();
+    Occupancy occupancy; // coin and actors on each tile
+    FreeCells freeCells; // tiles a coin can spawn on right now
+    static final int START_COINS = 22;
+    int keepCoins = 0;   // continuous respawn: top the coins back up to this many every tick (0 = off)
+    int crowd = 0;         // agents in an optional Population living alongside the match (0 = none)
+    Population population; // that crowd, rebuilt with every world and updated after the actors (null when crowd is 0)
+    CoinField coinField; // distance to nearest coin for swimmers (Cat and Dog)
+
+    // path queries; async (off by default headless) hands searches to worker threads
+    boolean asyncPaths = false;
+    PathService paths;
+    MatchLog replaying; // set by MatchLog.replay(): async path results land on the ticks it recorded
     int catCoins = 0;
     int dogCoins = 0;
 
+    // how a match ended (null while it is still running)
+    enum Outcome { CAT_COINS, DOG_COINS, DOG_CATCH, BIRD_KILL, TIME_UP }
+
     // state
     boolean paused = false;
+    private final List<Cell> dirtyCells = new ArrayList<>();
+    private boolean hudDirty, allDirty = true;
+    private static final int MAX_DIRTY = 256;
     boolean gameOver = false;
+    Outcome outcome = null;
     String gameMessage = "Race! First to collect 10 coins wins.";
     int score = 0;
     int highScore = 0;
     int timeLeftMs = START_TIME_MS;
 
-    // input
-    private int inDx = 0, inDy = 0;
+    // input: key presses arrive in the ring from the EDT; tick() takes them per inputPolicy
+    final InputRing input = new InputRing(64);
+    InputRing.Policy inputPolicy = InputRing.Policy.ONE_PER_TICK; // as in the window: each tick takes the oldest press
+    private final byte[] moves = new byte[InputRing.MAX_MOVES_PER_TICK]; // this tick's moves (direction codes)
+    private int moveCount = 0;
+
+    // one seeded random stream per match: grid, coins and every actor draw from it
+    long seed;
     Random rng = new Random();
+    MatchLog log; // seed + per-tick input of the current match
+
+    // ticks simulated since the world was built
+    int ticks = 0;
 
     public Stage() { }
 
-    public void togglePause() { paused = !paused; }
-    public void setInput(int dx, int dy) { inDx = dx; inDy = dy; }
+    public void togglePause() { paused = !paused; allDirty = true; }
+    public boolean isOver() { return gameOver; }
+
+    /** End the match with the given outcome and banner message. */
+    void endGame(Outcome o, String message) {
+        allDirty = true;
+        gameOver = true;
+        outcome = o;
+        gameMessage = message;
+    }
+
+    /** Leave the start screen and build a world for the given choice ("Cat", "Dog", or anything else for AI vs AI). */
+    public void startMatch(String choice) {
+        startMatch(choice, new Random().nextLong());
+    }
+
+    /** Same as startMatch(choice) but with a fixed seed, so the match can be reproduced. */
+    public void startMatch(String choice, long seed) {
+        chosenCharacter = choice;
+        showStart = false;
+        allDirty = true;
+        buildWorldWithChoice(seed);
+    }
+    /** Set this tick's move directly, replacing any other (for headless drivers; the window uses input). */
+    public void setInput(int dx, int dy) {
+        moveCount = 0;
+        queueInput(dx, dy);
+    }
+
+    /** Add one more move for this tick (how a replay feeds back a tick that took several). */
+    public void queueInput(int dx, int dy) {
+        int c = InputRing.code(dx, dy);
+        if (c != 0 && moveCount < moves.length) moves[moveCount++] = (byte) c;
+    }
 
     public void buildWorldWithChoice() {
-        grid = new Grid();
+        buildWorldWithChoice(new Random().nextLong());
+    }
 
+    public void buildWorldWithChoice(long seed) {
+        this.seed = seed;
+        rng = new Random(seed);
+        log = new MatchLog(seed, chosenCharacter, inputPolicy, mapCols, mapRows,
+                mapPath == null ? null : mapPath.toString(), keepCoins, asyncPaths, crowd);
+        input.clear(); // keys pressed before the match started
+        moveCount = 0;
+        if (mapPath != null) {
+            grid = openMap();
+            mapCols = grid.cols;
+            mapRows = grid.rows;
+        } else {
+            grid = new Grid(mapCols, mapRows, rng);
+        }
+
+        // (15, 12) and (2, 2) on the default 20x20 map
+        Cell far = grid.cellAtColRow(mapCols * 3 / 4, mapRows * 3 / 5);
+        Cell near = grid.cellAtColRow(2, 2);
         if ("Cat".equals(chosenCharacter)) {
-            cat = new Cat(grid.cellAtColRow(15, 12));
-            dog = new Dog(grid.cellAtColRow(2, 2));
+            cat = new Cat(far);
+            dog = new Dog(near);
         } else if ("Dog".equals(chosenCharacter)) {
-            dog = new Dog(grid.cellAtColRow(15, 12));
-            cat = new Cat(grid.cellAtColRow(2, 2));
+            dog = new Dog(far);
+            cat = new Cat(near);
         } else {
-            cat = new Cat(grid.cellAtColRow(15, 12));
-            dog = new Dog(grid.cellAtColRow(2, 2));
+            cat = new Cat(far);
+            dog = new Dog(near);
         }
 
         bird = new Bird(grid.firstRiverCellOrFallback());
 
         actors.clear(); updatables.clear(); coins.clear();
+        freeCells = coinCells();
+        occupancy = new Occupancy(grid, freeCells);
+        coinField = new CoinField(grid, Grid.SWIMMER_MASK);
+        paths = new PathService(grid, asyncPaths, log, replaying);
         actors.add(dog); actors.add(cat); actors.add(bird);
         updatables.add(dog); updatables.add(cat); updatables.add(bird);
+        for (Actor a : actors) occupancy.add(a);
+        grid.prepareRouting(Grid.passMaskFor(cat)); // no stall on the first long path query
+        grid.prepareRouting(Grid.passMaskFor(dog));
+        grid.riverRoutes();
 
-        spawnCoins(22);
+        spawnCoins(Math.max(START_COINS, keepCoins));
+        coinField(); // built here too, not in the first tick
+        population = null; // any old one lived on the old grid
+        if (crowd > 0) {
+            population = new Population(grid, rng.nextLong());
+            population.respawn = true; // keeps the crowd at full size
+            population.spawnCrowd(this, crowd);
+        }
         catCoins = 0;
         dogCoins = 0;
         score = 0;
         timeLeftMs = START_TIME_MS;
+        ticks = 0;
         gameOver = false;
+        outcome = null;
         gameMessage = "Race! First to collect 10 coins wins.";
     }
 
@@ -78,76 +179,157 @@ public class Stage {
         showStart = true;
         chosenCharacter = "";
         actors.clear(); updatables.clear(); coins.clear();
+        population = null;
         catCoins = dogCoins = 0;
         score = 0; timeLeftMs = START_TIME_MS;
+        ticks = 0;
         gameOver = false;
+        outcome = null;
+        allDirty = true;
+    }
+
+    private Grid openMap() {
+        try {
+            if (mapGrid == null) mapGrid = Grid.open(mapPath);
+            return mapGrid;
+        } catch (java.io.IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Tiles a coin may ever be on this match: every tile the Cat can get to (it may start on a tree, so its
+     * neighbours count too). On a large grid only the tiles within CoinField.LARGE_RANGE of the Cat count,
+     * as far as the coin field reaches, so the rest of the map is never read.
+     */
+    private FreeCells coinCells() {
+        int mask = Grid.passMaskFor(cat), c = cat.location().col, r = cat.location().row;
+        if (!grid.isLarge()) return new FreeCells(reachAround(grid.passBits(mask), c, r), false);
+        int[] origin = new int[2];
+        BitGrid pass = window(mask, cat.location(), CoinField.LARGE_RANGE, origin);
+        return new FreeCells(reachAround(pass, c - origin[0], r - origin[1]), origin[0], origin[1], grid.cols, true);
+    }
+
+    // tiles of pass reachable from (c, r) or, where that is blocked, from its neighbours
+    private static BitGrid reachAround(BitGrid pass, int c, int r) {
+        BitGrid tiles = pass.reach(r * pass.cols + c);
+        int[][] nbs = {{c + 1, r}, {c - 1, r}, {c, r + 1}, {c, r - 1}};
+        for (int[] nb : nbs) {
+            if (nb[0] < 0 || nb[0] >= pass.cols || nb[1] < 0 || nb[1] >= pass.rows) continue;
+            int i = nb[1] * pass.cols + nb[0];
+            if (!tiles.get(i)) tiles.or(pass.reach(i));
+        }
+        return tiles;
+    }
+
+    // board of the tiles passable under mask within range of around; origin gets the window's top-left col and row
+    private BitGrid window(int mask, Cell around, int range, int[] origin) {
+        int c0 = Math.max(0, around.col - range), r0 = Math.max(0, around.row - range);
+        int c1 = Math.min(grid.cols, around.col + range + 1), r1 = Math.min(grid.rows, around.row + range + 1);
+        origin[0] = c0;
+        origin[1] = r0;
+        return BitGrid.passable(grid, mask, c0, r0, c1 - c0, r1 - r0);
     }
 
-    private void spawnCoins(int n) {
-        int tries = 0;
-        while (coins.size() < n && tries < 800) {
-            tries++;
-            int c = rng.nextInt(Grid.COLS), r = rng.nextInt(Grid.ROWS);
-            Cell spot = grid.cellAtColRow(c, r);
-            if (grid.isBlockedFor(cat, spot)) continue;
-            boolean onActor = (spot == cat.location() || spot == dog.location() || spot == bird.location());
-            if (onActor) continue;
-            boolean dup = false;
-            for (Coin co : coins) if (co.at == spot) { dup = true; break; }
-            if (dup) continue;
-            coins.add(new Coin(spot));
+    /** A random land (non-river) tile actor a can walk to from where it is, or null; on a large grid one within LARGE_ESCAPE_RANGE. */
+    Cell randomReachableLand(Actor a) {
+        int mask = Grid.passMaskFor(a);
+        if (!grid.isLarge()) {
+            BitGrid options = grid.passBits(mask).reach(grid.index(a.location())).and(grid.passBits(Grid.WALKER_MASK));
+            int n = options.count();
+            return n == 0 ? null : grid.cellAt(options.nth(rng.nextInt(n)));
         }
+        int[] origin = new int[2];
+        BitGrid pass = window(mask, a.location(), LARGE_ESCAPE_RANGE, origin);
+        BitGrid options = pass.reach((a.location().row - origin[1]) * pass.cols + a.location().col - origin[0])
+                .and(window(Grid.WALKER_MASK, a.location(), LARGE_ESCAPE_RANGE, origin));
+        int n = options.count();
+        if (n == 0) return null;
+        int i = options.nth(rng.nextInt(n));
+        return grid.cellAtColRow(origin[0] + i % options.cols, origin[1] + i / options.cols);
+    }
+
+    /** Add coins on uniformly random free tiles until there are n (or no tile is free); O(1) per coin. */
+    void spawnCoins(int n) {
+        while (coins.size() < n && freeCells.size() > 0) addCoin(grid.cellAt(freeCells.sample(rng)));
+    }
+
+    void addCoin(Cell at) {
+        dirtyCells.add(at);
+        Coin c = new Coin(at);
+        c.slot = coins.size();
+        coins.add(c);
+        occupancy.putCoin(c);
+        coinField.addCoin(at);
+    }
+
+    void removeCoin(Coin c) {
+        dirtyCells.add(c.at);
+        Coin last = coins.remove(coins.size() - 1); // swap-remove: no shifting, coin order does not matter
+        if (last != c) { coins.set(c.slot, last); last.slot = c.slot; }
+        occupancy.removeCoin(c);
+        coinField.removeCoin(c.at);
+    }
+
+    /** Up-to-date coin distance field (built on the first read of a match, then patched per coin). */
+    CoinField coinField() {
+        coinField.update(coins);
+        return coinField;
     }
 
     public void tick() {
         if (showStart || gameOver) return;
 
+        ticks++;
+        for (Actor a : actors) { a.prevLoc = a.loc; a.prevLook = a.look(); }
+        int hudBefore = hudKey();
+        paths.beginTick(ticks);
+        if (grid.isMapped()) for (Actor a : actors) grid.prefetch(a.location(), PREFETCH_TILES);
         timeLeftMs -= TICK_MS;
         if (timeLeftMs < 0) timeLeftMs = 0;
 
-        // send keyboard input to the chosen character
-        if ("Cat".equals(chosenCharacter)) {
-            cat.setDirection(inDx, inDy);
-        } else if ("Dog".equals(chosenCharacter)) {
-            dog.setDirection(inDx, inDy);
+        // send keyboard input to the chosen character: every move but the last is
+        // taken straight away, the last one in the normal update below
+        if (moveCount == 0 && !input.isEmpty()) moveCount = input.drain(inputPolicy, System.nanoTime(), moves);
+        Updatable player = "Cat".equals(chosenCharacter) ? cat : "Dog".equals(chosenCharacter) ? dog : null;
+        for (int i = 0; i < moveCount; i++) {
+            int[] d = InputRing.DIRS[moves[i]];
+            if (player == cat) cat.setDirection(d[0], d[1]);
+            else if (player == dog) dog.setDirection(d[0], d[1]);
+            if (i < moveCount - 1 && player != null && !gameOver) player.update(this);
         }
-        inDx = 0; inDy = 0;
+        if (log != null) log.record(moves, moveCount);
+        moveCount = 0;
 
         // updates
         for (Updatable u : updatables) u.update(this);
+        if (population != null) population.update(this);
 
         // Cat collects coin
-        Coin picked = null;
-        for (Coin c : coins) {
-            if (c.at == cat.location()) { picked = c; break; }
-        }
+        Coin picked = occupancy.coinAt(grid.index(cat.location()));
         if (picked != null) {
-            coins.remove(picked);
+            removeCoin(picked);
             catCoins++;
             score += 10;
         }
 
         // Dog collects coin
-        Coin dogPick = null;
-        for (Coin c : coins) {
-            if (c.at == dog.location()) { dogPick = c; break; }
-        }
+        Coin dogPick = occupancy.coinAt(grid.index(dog.location()));
         if (dogPick != null) {
-            coins.remove(dogPick);
+            removeCoin(dogPick);
             dogCoins++;
         }
 
+        if (keepCoins > 0) spawnCoins(keepCoins);
+
         // win / lose checks
         if (catCoins >= COIN_GOAL) {
-            gameOver = true;
-            gameMessage = "Cat wins! Collected 10 coins first.";
+            endGame(Outcome.CAT_COINS, "Cat wins! Collected 10 coins first.");
             if (score > highScore) highScore = score;
         } else if (dogCoins >= COIN_GOAL) {
-            gameOver = true;
-            gameMessage = "Dog wins! Collected 10 coins first.";
+            endGame(Outcome.DOG_COINS, "Dog wins! Collected 10 coins first.");
         } else if (timeLeftMs <= 0) {
-            gameOver = true;
-            gameMessage = "Time up! Cat " + catCoins + " vs Dog " + dogCoins + " coins.";
+            endGame(Outcome.TIME_UP, "Time up! Cat " + catCoins + " vs Dog " + dogCoins + " coins.");
             if (score > highScore) highScore = score;
         } else if (!cat.isAlive()) {
             gameOver = true;
@@ -156,71 +338,27 @@ public class Stage {
         }
 
         if (!gameOver) score++;
-    }
 
-    public void paint(Graphics g) {
-        if (showStart) {
-            // start screen
-            g.setColor(new Color(255, 228, 235));
-            g.fillRect(0, 0, 1024, 720);
-
-            g.setColor(Color.BLACK);
-            g.setFont(new Font("SansSerif", Font.BOLD, 24));
-            g.drawString("Welcome to Pinky Jungle!", 360, 200);
-            g.setFont(new Font("SansSerif", Font.PLAIN, 18));
-            g.drawString("Instructions:", 380, 260);
-            g.drawString("- Use arrow keys or WASD to move your character", 380, 290);
-            g.drawString("- Race to collect 10 coins before your rival (Dog or Cat)", 380, 315);
-            g.drawString("- Beware the hidden Bird in the river — it ambushes swimmers", 380, 340);
-            g.drawString("- Press P to pause, R to restart, Q to quit", 380, 365);
-            g.drawString("Choose your character to start:", 380, 420);
-            g.drawString("Press 1 to play as Cat", 380, 450);
-            g.drawString("Press 2 to play as Dog", 380, 480);
-            return;
-        }
-
-        drawSky(g);
-        grid.paint(g);
-        drawCoins(g);
-        for (Actor a : actors) a.paint(g);
-
-        // HUD
-        g.setColor(Color.DARK_GRAY);
-        g.drawString("Cat coins: " + catCoins + " / " + COIN_GOAL, 20, 660);
-        g.drawString("Dog coins: " + dogCoins + " / " + COIN_GOAL, 20, 680);
-        g.drawString("Time left: " + (timeLeftMs/1000) + "s", 20, 700);
-        g.drawString(gameMessage, 260, 700);
-
-        if (paused) {
-            g.setColor(new Color(0,0,0,120));
-            g.fillRect(0, 0, 1024, 720);
-            g.setColor(Color.WHITE);
-            g.drawString("PAUSED (press P to resume)", 400, 360);
-        }
-
-        if (gameOver) {
-            g.setColor(new Color(0,0,0,140));
-            g.fillRect(0, 0, 1024, 720);
-            g.setColor(Color.WHITE);
-            g.drawString("GAME OVER: " + gameMessage, 360, 360);
-            g.drawString("Press R to go to the start screen", 360, 380);
+        // what the view has to redraw
+        for (Actor a : actors) {
+            if (a.prevLoc != a.loc) { dirtyCells.add(a.prevLoc); dirtyCells.add(a.loc); }
+            else if (a.prevLook != a.look()) dirtyCells.add(a.loc);
         }
+        if (hudKey() != hudBefore) hudDirty = true;
+        if (gameOver || dirtyCells.size() > MAX_DIRTY) allDirty = true; // nobody drawing (headless) or too much to list
+        if (allDirty) dirtyCells.clear();
     }
 
-    private void drawCoins(Graphics g) {
-        for (Coin c : coins) {
-            g.setColor(new Color(255, 215, 0));
-            g.fillOval(c.at.x + 10, c.at.y + 10, Cell.SIZE - 20, Cell.SIZE - 20);
-            g.setColor(Color.ORANGE);
-            g.drawOval(c.at.x + 10, c.at.y + 10, Cell.SIZE - 20, Cell.SIZE - 20);
-        }
-    }
+    // everything the HUD shows that can change during a match
+    private int hudKey() { return (catCoins << 24) ^ (dogCoins << 16) ^ (timeLeftMs / 1000); }
 
-    private void drawSky(Graphics g) {
-        g.setColor(new Color(255, 221, 89)); g.fillOval(940, 30, 50, 50);
-        g.setColor(Color.WHITE); drawCloud(g, 140, 50); drawCloud(g, 300, 70); drawCloud(g, 520, 45);
-    }
-    private void drawCloud(Graphics g, int x, int y) {
-        g.fillOval(x, y, 60, 38); g.fillOval(x+22, y-8, 60, 38); g.fillOval(x+40, y, 60, 38);
-    }
+    // --- what changed since the view last drew (so it can repaint just that) ---
+
+    /** Tiles whose contents changed (actors moved or changed look, coins appeared or went). */
+    List<Cell> dirtyCells() { return dirtyCells; }
+    boolean hudDirty() { return hudDirty; }
+    /** The whole view must be redrawn (new match, start screen, pause, game over). */
+    boolean allDirty() { return allDirty; }
+    boolean anyDirty() { return allDirty || hudDirty || !dirtyCells.isEmpty(); }
+    void clearDirty() { dirtyCells.clear(); hudDirty = false; allDirty = false; }
 }
\ No newline at end of file
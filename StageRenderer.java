@@ -0,0 +1,151 @@
+/**
+ * StageRenderer – draws a Stage with Swing/AWT.
+ *
+ * MOD: painting used to live in Stage itself. It is split out here so the
+ * simulation (Stage, Grid, actors' update logic) can run headless without a
+ * window; only Main needs this class.
+ *
+ * The background, sky and terrain never change during a match, so they are
+ * drawn once into an image compatible with the screen (which Java2D can keep
+ * in video memory) and blitted each frame; only coins, actors and the HUD
+ * are drawn per frame. The layer is rebuilt when the Stage gets a new Grid,
+ * or after invalidate() if a map is changed in place.
+ *
+ * Coins and actors are blitted from a SpriteAtlas. Both the layer and the
+ * atlas are drawn at the Graphics' device scale, so HiDPI screens get sharp
+ * images rather than upscaled ones.
+ */
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class StageRenderer {
+    public static final int WIDTH = 1024, HEIGHT = 720;
+    public static final Color BACKGROUND = new Color(255, 228, 235);
+    /** Where the HUD text goes; repainted as one region when the scores or the clock change. */
+    public static final Rectangle HUD_AREA = new Rectangle(0, 640, WIDTH, 70);
+    private static final Color SUN = new Color(255, 221, 89);
+    private static final Color COIN = new Color(255, 215, 0);
+    private static final Color PAUSE_SHADE = new Color(0, 0, 0, 120), OVER_SHADE = new Color(0, 0, 0, 140);
+    private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 24), TEXT_FONT = new Font("SansSerif", Font.PLAIN, 18);
+
+    private BufferedImage staticLayer; // background + sky + terrain
+    private Grid layerFor;             // the grid staticLayer was drawn from
+    private SpriteAtlas atlas;         // at the scale of the last frame's Graphics
+    private final RenderSnapshot scratch = new RenderSnapshot(); // for paint(Graphics, Stage)
+
+    /** Forget the cached terrain layer, e.g. after tiles of the current grid changed. */
+    public void invalidate() { staticLayer = null; }
+
+    /** Paint s directly; only safe on the thread that runs the Stage (headless tools do this). */
+    public void paint(Graphics g, Stage s) {
+        scratch.capture(s, scratch.seq + 1);
+        paint(g, scratch, 1.0);
+    }
+
+    /**
+     * Paint snapshot s with actors drawn `alpha` of the way (0..1) from where
+     * they stood when the last tick began to where they are now, so a loop
+     * rendering faster than TICK_MS shows smooth motion.
+     */
+    public void paint(Graphics g, RenderSnapshot s, double alpha) {
+        if (s.showStart) {
+            // start screen
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+
+            g.setColor(Color.BLACK);
+            g.setFont(TITLE_FONT);
+            g.drawString("Welcome to Pinky Jungle!", 360, 200);
+            g.setFont(TEXT_FONT);
+            g.drawString("Instructions:", 380, 260);
+            g.drawString("- Use arrow keys or WASD to move your character", 380, 290);
+            g.drawString("- Race to collect 10 coins before your rival (Dog or Cat)", 380, 315);
+            g.drawString("- Beware the hidden Bird in the river — it ambushes swimmers", 380, 340);
+            g.drawString("- Press P to pause, R to restart, Q to quit", 380, 365);
+            g.drawString("Choose your character to start:", 380, 420);
+            g.drawString("Press 1 to play as Cat", 380, 450);
+            g.drawString("Press 2 to play as Dog", 380, 480);
+            return;
+        }
+
+        double scale = (g instanceof Graphics2D) ? ((Graphics2D) g).getTransform().getScaleX() : 1;
+        if (atlas == null || atlas.scale != scale) {
+            atlas = new SpriteAtlas(scale);
+            staticLayer = null;
+        }
+        if (staticLayer == null || layerFor != s.grid) {
+            staticLayer = renderStatic(s.grid, scale);
+            layerFor = s.grid;
+        }
+        g.drawImage(staticLayer, 0, 0, WIDTH, HEIGHT, null);
+        Rectangle clip = g.getClipBounds(); // a dirty-region repaint only needs what it touches
+        for (int i = 0; i < s.coinCount; i++) if (clip == null || clip.intersects(s.coins[i])) atlas.drawCoin(g, s.coins[i]);
+        for (int i = 0; i < s.actorCount; i++) if (s.actorLook[i] >= 0) drawActor(g, s, i, alpha);
+
+        // HUD
+        g.setColor(Color.DARK_GRAY);
+        g.drawString("Cat coins: " + s.catCoins + " / " + Stage.COIN_GOAL, 20, 660);
+        g.drawString("Dog coins: " + s.dogCoins + " / " + Stage.COIN_GOAL, 20, 680);
+        g.drawString("Time left: " + (s.timeLeftMs/1000) + "s", 20, 700);
+        g.drawString(s.gameMessage, 260, 700);
+
+        if (s.paused) {
+            g.setColor(PAUSE_SHADE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.setColor(Color.WHITE);
+            g.drawString("PAUSED (press P to resume)", 400, 360);
+        }
+
+        if (s.gameOver) {
+            g.setColor(OVER_SHADE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.setColor(Color.WHITE);
+            g.drawString("GAME OVER: " + s.gameMessage, 360, 360);
+            g.drawString("Press R to go to the start screen", 360, 380);
+        }
+    }
+
+    private void drawActor(Graphics g, RenderSnapshot s, int i, double alpha) {
+        Cell from = s.actorFrom[i], to = s.actorAt[i];
+        Actor a = s.actors[i];
+        int look = s.actorLook[i];
+        // only glide single steps; teleports (escapes, Bird pushes, a new match) snap
+        if (alpha >= 1 || from == to || Math.abs(from.col - to.col) + Math.abs(from.row - to.row) != 1) {
+            atlas.draw(g, a, look, to.x, to.y);
+            return;
+        }
+        atlas.draw(g, a, look, from.x + (int) Math.round((to.x - from.x) * alpha), from.y + (int) Math.round((to.y - from.y) * alpha));
+    }
+
+    private BufferedImage renderStatic(Grid grid, double scale) {
+        BufferedImage img = SpriteAtlas.image((int) Math.ceil(WIDTH * scale), (int) Math.ceil(HEIGHT * scale), Transparency.OPAQUE);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.scale(scale, scale);
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            drawSky(g);
+            g.setClip(0, 0, WIDTH, HEIGHT);
+            grid.paint(g);
+        } finally {
+            g.dispose();
+        }
+        return img;
+    }
+
+    /** One coin, with (x, y) as its tile's top-left corner (SpriteAtlas caches it). */
+    static void paintCoin(Graphics g, int x, int y) {
+        g.setColor(COIN);
+        g.fillOval(x + 10, y + 10, Cell.SIZE - 20, Cell.SIZE - 20);
+        g.setColor(Color.ORANGE);
+        g.drawOval(x + 10, y + 10, Cell.SIZE - 20, Cell.SIZE - 20);
+    }
+
+    private void drawSky(Graphics g) {
+        g.setColor(SUN); g.fillOval(940, 30, 50, 50);
+        g.setColor(Color.WHITE); drawCloud(g, 140, 50); drawCloud(g, 300, 70); drawCloud(g, 520, 45);
+    }
+    private void drawCloud(Graphics g, int x, int y) {
+        g.fillOval(x, y, 60, 38); g.fillOval(x+22, y-8, 60, 38); g.fillOval(x+40, y, 60, 38);
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * TerrainCost – how many ticks it takes a particular actor to enter a tile.
+ *
+ * Used by AStar so that paths are fastest in ticks rather than shortest in
+ * steps. The default cost for an actor follows the same rules as movement:
+ * tiles outside its passability mask (Obstacle.isPassableFor) are blocked,
+ * land costs one move, and a river tile costs 1 + swimDelayTicks() moves
+ * because of the swim slowdown in Cat and Dog.
+ */
+public interface TerrainCost {
+    int BLOCKED = -1;
+
+    /** Ticks to step onto tile idx, or BLOCKED. Never less than 1 for an open tile. */
+    int enter(Grid g, int idx);
+
+    /** forActor's cost with the swim delay fixed, for searches that run off the simulation thread. */
+    static TerrainCost fixed(int mask, int swimDelay) {
+        return (g, idx) -> {
+            if (!g.passable(idx, mask)) return BLOCKED;
+            return g.isRiver(idx) ? 1 + swimDelay : 1;
+        };
+    }
+
+    static TerrainCost forActor(Actor a) {
+        final int mask = Grid.passMaskFor(a);
+        return (g, idx) -> {
+            if (!g.passable(idx, mask)) return BLOCKED;
+            return g.isRiver(idx) ? 1 + a.swimDelayTicks() : 1;
+        };
+    }
+}
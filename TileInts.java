@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+/**
+ * TileInts – one int per tile of a Grid, every tile starting at the same
+ * default value.
+ *
+ * On a grid of normal size this is a single array. On a large one
+ * (Grid.isLarge(), e.g. a big MapFile map) the tiles are split into square
+ * chunks of CHUNK x CHUNK, and a chunk is only allocated once one of its tiles
+ * is set, so a structure that only touches the tiles around the coins and
+ * actors costs heap in proportion to those tiles, not to the map.
+ */
+public class TileInts {
+    static final int CHUNK_SHIFT = 8, CHUNK = 1 << CHUNK_SHIFT; // 256 x 256 tiles, 256 KiB per chunk
+
+    private final int cols, def, chunksX;
+    private final int[] dense;    // null on a large grid
+    private final int[][] chunks; // null on a normal one
+
+    public TileInts(Grid g, int def) {
+        this.cols = g.cols;
+        this.def = def;
+        this.chunksX = (g.cols + CHUNK - 1) >> CHUNK_SHIFT;
+        if (g.isLarge()) {
+            dense = null;
+            chunks = new int[chunksX * ((g.rows + CHUNK - 1) >> CHUNK_SHIFT)][];
+        } else {
+            dense = new int[g.size()];
+            chunks = null;
+            Arrays.fill(dense, def);
+        }
+    }
+
+    public int get(int idx) {
+        if (dense != null) return dense[idx];
+        int c = idx % cols, r = idx / cols;
+        int[] ch = chunks[(r >> CHUNK_SHIFT) * chunksX + (c >> CHUNK_SHIFT)];
+        return ch == null ? def : ch[((r & (CHUNK - 1)) << CHUNK_SHIFT) | (c & (CHUNK - 1))];
+    }
+
+    public void set(int idx, int v) {
+        if (dense != null) { dense[idx] = v; return; }
+        int c = idx % cols, r = idx / cols, id = (r >> CHUNK_SHIFT) * chunksX + (c >> CHUNK_SHIFT);
+        int[] ch = chunks[id];
+        if (ch == null) {
+            if (v == def) return;
+            ch = chunks[id] = new int[CHUNK * CHUNK];
+            Arrays.fill(ch, def);
+        }
+        ch[((r & (CHUNK - 1)) << CHUNK_SHIFT) | (c & (CHUNK - 1))] = v;
+    }
+
+    /** Put every tile back to the default (a large grid drops its chunks). */
+    public void reset() {
+        if (dense != null) Arrays.fill(dense, def);
+        else Arrays.fill(chunks, null);
+    }
+
+    /** Chunks allocated so far (0 on a normal grid). */
+    public int allocatedChunks() {
+        int n = 0;
+        if (chunks != null) for (int[] ch : chunks) if (ch != null) n++;
+        return n;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Tournament – plays many independent AI-vs-AI matches across all cores.
+ *
+ * Each match owns its own Stage, Grid, actors and Random objects, and the only
+ * statics they touch are the constants in Grid/Cell/Stage, so matches never
+ * share mutable state. Every worker plays a slice of the matches into its own
+ * Stats and the slices are merged at the end, so workers never contend with
+ * each other and throughput scales with the number of cores.
+ *
+ * Usage: java -cp out Tournament [matches] [threads]
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Tournament {
+
+    /** Aggregated results for a batch of matches. */
+    public static class Stats {
+        final long[] outcomes = new long[Stage.Outcome.values().length];
+        // tick histogram, one bucket per tick count (index MATCH_TICKS = timer ran out)
+        final long[] tickHistogram = new long[Headless.MATCH_TICKS + 1];
+        long matches = 0;
+        long totalTicks = 0;
+
+        void record(Stage s) {
+            matches++;
+            totalTicks += s.ticks;
+            if (s.outcome != null) outcomes[s.outcome.ordinal()]++;
+            tickHistogram[Math.min(s.ticks, Headless.MATCH_TICKS)]++;
+        }
+
+        void merge(Stats o) {
+            matches += o.matches;
+            totalTicks += o.totalTicks;
+            for (int i = 0; i < outcomes.length; i++) outcomes[i] += o.outcomes[i];
+            for (int i = 0; i < tickHistogram.length; i++) tickHistogram[i] += o.tickHistogram[i];
+        }
+
+        public long count(Stage.Outcome o) { return outcomes[o.ordinal()]; }
+        public double rate(Stage.Outcome o) { return matches == 0 ? 0 : (double) count(o) / matches; }
+        public double meanTicks() { return matches == 0 ? 0 : (double) totalTicks / matches; }
+
+        /** Smallest tick count t such that at least fraction p of matches ended by tick t. */
+        public int ticksPercentile(double p) {
+            long need = (long) Math.ceil(p * matches), seen = 0;
+            for (int t = 0; t < tickHistogram.length; t++) {
+                seen += tickHistogram[t];
+                if (seen >= need && seen > 0) return t;
+            }
+            return tickHistogram.length - 1;
+        }
+    }
+
+    /** Play the given number of matches on a pool of the given size and merge the results. */
+    public static Stats run(int matches, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Stats>> parts = new ArrayList<>();
+            int per = matches / threads, extra = matches % threads;
+            for (int t = 0; t < threads; t++) {
+                final int n = per + (t < extra ? 1 : 0);
+                parts.add(pool.submit(() -> {
+                    Stats local = new Stats();
+                    for (int i = 0; i < n; i++) local.record(Headless.playMatch());
+                    return local;
+                }));
+            }
+            Stats total = new Stats();
+            for (Future<Stats> f : parts) total.merge(f.get());
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("tournament interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("match failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        run(Math.min(matches, 1000), threads); // JIT warm-up
+
+        long t0 = System.nanoTime();
+        Stats st = run(matches, threads);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        System.out.printf("%d matches on %d threads in %.2f s (%.0f matches/s)%n",
+                st.matches, threads, secs, st.matches / secs);
+        for (Stage.Outcome o : Stage.Outcome.values())
+            System.out.printf("  %-10s %7d  (%5.1f%%)%n", o, st.count(o), 100 * st.rate(o));
+        System.out.printf("  ticks: mean %.1f, p10 %d, p50 %d, p90 %d%n",
+                st.meanTicks(), st.ticksPercentile(0.1), st.ticksPercentile(0.5), st.ticksPercentile(0.9));
+    }
+}
@@ -1,15 +1,17 @@
 import java.awt.*;
 
 public class TreeCell extends Cell implements Obstacle {
-    public TreeCell(int x, int y) { super(x, y); }
+    private static final Color TRUNK = new Color(139, 69, 19), LEAVES = new Color(34, 139, 34);
+
+    public TreeCell(int col, int row) { super(col, row); }
 
     @Override
     public void paint(Graphics g) {
         // trunk
-        g.setColor(new Color(139, 69, 19));
+        g.setColor(TRUNK);
         g.fillRect(x + SIZE/3, y + SIZE/2, SIZE/3, SIZE/2);
         // leaves
-        g.setColor(new Color(34, 139, 34));
+        g.setColor(LEAVES);
         g.fillOval(x + 4, y, SIZE - 8, SIZE - 10);
         g.setColor(Color.GREEN);
         g.drawOval(x + 4, y, SIZE - 8, SIZE - 10);
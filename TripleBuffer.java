@@ -0,0 +1,41 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * TripleBuffer – lock-free handoff of the latest value from one writer thread
+ * to one reader thread.
+ *
+ * There are three slots. The writer fills its back slot and publish()es it by
+ * swapping it with the middle slot; the reader's latest() swaps the middle
+ * slot for its front slot only if something new was published since it last
+ * looked. Each swap is one atomic getAndSet, so neither side ever waits for
+ * the other, and the writer never touches the slot the reader is using.
+ * Old slots come back to the writer to be overwritten, so nothing is
+ * allocated after construction.
+ */
+public class TripleBuffer<T> {
+    private static final int FRESH = 4, INDEX = 3;
+
+    private final Object[] slots = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(2); // slot index, plus FRESH once published
+    private int back = 0;  // writer's slot
+    private int front = 1; // reader's slot
+
+    public TripleBuffer(Supplier<T> factory) {
+        for (int i = 0; i < slots.length; i++) slots[i] = factory.get();
+    }
+
+    /** The slot the writer may fill (writer thread only). */
+    @SuppressWarnings("unchecked")
+    public T back() { return (T) slots[back]; }
+
+    /** Hand the filled back slot to the reader and take a free one (writer thread only). */
+    public void publish() { back = middle.getAndSet(back | FRESH) & INDEX; }
+
+    /** The most recently published value (reader thread only); the same one again if nothing new arrived. */
+    @SuppressWarnings("unchecked")
+    public T latest() {
+        if ((middle.get() & FRESH) != 0) front = middle.getAndSet(front) & INDEX;
+        return (T) slots[front];
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.stream.IntStream;
+
+/**
+ * WorldGen – procedural jungles built chunk by chunk.
+ *
+ * The world is cut into CHUNK x CHUNK tiles, and every chunk can be built on
+ * its own, in any order and on any thread, with the same result:
+ *  - Rivers: one 3-wide river per band of RIVER_SPACING columns. Its column
+ *    in each row comes from smooth value noise hashed from (seed, river, row),
+ *    so a chunk works out where the river crosses it without looking at its
+ *    neighbours, and the river lines up across chunk borders. Each row also
+ *    covers the gap to the previous row's column, so the river never breaks.
+ *  - Trees: 12% of land tiles. Each chunk has its own seed, hashed with the
+ *    tile's position inside the chunk, so no tile depends on another's draw.
+ *
+ * generate() fills whole maps with chunks in parallel; chunk() rebuilds any
+ * single chunk on demand, which is all a streamed map needs.
+ */
+public class WorldGen {
+    public static final int CHUNK = 256;
+    public static final int RIVER_SPACING = 256; // columns per river band on wide maps
+    static final int RIVER_WIDTH = 3;
+    static final double TREE_CHANCE = 0.12;
+    private static final long TREE_BELOW = (long) (TREE_CHANCE * (1L << 53)); // on the top 53 bits of a hash
+    private static final int MEANDER_ROWS = 24, WIGGLE_ROWS = 6; // noise wavelengths along the river
+
+    public final long seed;
+
+    public WorldGen(long seed) { this.seed = seed; }
+
+    /** A cols x rows grid generated from this seed. */
+    public Grid grid(int cols, int rows) { return new Grid(cols, rows, generate(cols, rows)); }
+
+    /** Packed terrain for a cols x rows world (row-major), chunks built in parallel. */
+    public byte[] generate(int cols, int rows) {
+        byte[] terrain = new byte[cols * rows];
+        int chunksX = (cols + CHUNK - 1) / CHUNK, chunksY = (rows + CHUNK - 1) / CHUNK;
+        IntStream ids = IntStream.range(0, chunksX * chunksY);
+        if (chunksX * chunksY > 1) ids = ids.parallel(); // a default 20x20 map is one chunk; skip the pool
+        ids.forEach(id -> fill(id % chunksX, id / chunksX, cols, rows, terrain, 0, cols));
+        return terrain;
+    }
+
+    /**
+     * Terrain of chunk (cx, cy) in a world `cols` wide and unbounded downwards,
+     * CHUNK x CHUNK bytes row-major; tiles past the right edge are TREE. The
+     * same arguments always give the same bytes.
+     */
+    public byte[] chunk(int cx, int cy, int cols) {
+        byte[] out = new byte[CHUNK * CHUNK];
+        fill(cx, cy, cols, Integer.MAX_VALUE, out, -(cy * CHUNK * CHUNK + cx * CHUNK), CHUNK); // int wrap-around cancels out
+        for (int c = Math.max(0, cols - cx * CHUNK); c < CHUNK; c++)
+            for (int r = 0; r < CHUNK; r++) out[r * CHUNK + c] = Grid.TREE;
+        return out;
+    }
+
+    // writes tile (c, r) of chunk (cx, cy) to out[offset + r * stride + c]
+    private void fill(int cx, int cy, int cols, int rows, byte[] out, int offset, int stride) {
+        int c0 = cx * CHUNK, r0 = cy * CHUNK;
+        int c1 = (int) Math.min((long) c0 + CHUNK, cols), r1 = (int) Math.min((long) r0 + CHUNK, rows);
+        int spacing = Math.min(RIVER_SPACING, cols);
+        // rivers whose band (plus meander) can reach this chunk
+        int k0 = Math.max(0, c0 / spacing - 1), k1 = (c0 + CHUNK) / spacing + 1;
+        long chunkSeed = mix(seed ^ mix(((long) cx << 32) ^ (cy & 0xffffffffL)));
+
+        for (int r = r0; r < r1; r++) {
+            int base = offset + r * stride;
+            long rowSeed = chunkSeed + (long) (r - r0) * CHUNK * 0x9e3779b97f4a7c15L;
+            for (int c = c0; c < c1; c++) {
+                long h = mix(rowSeed + (c - c0) * 0x9e3779b97f4a7c15L);
+                out[base + c] = (h >>> 11) < TREE_BELOW ? Grid.TREE : Grid.LAND;
+            }
+            for (int k = k0; k <= k1; k++) {
+                int col = riverCol(k, r, spacing, cols);
+                if (col < 0) continue;
+                int prev = r > 0 ? riverCol(k, r - 1, spacing, cols) : col;
+                int lo = Math.max(c0, Math.min(col, prev)), hi = Math.min(c1 - 1, Math.max(col, prev) + RIVER_WIDTH - 1);
+                for (int c = lo; c <= hi; c++) out[base + c] = Grid.RIVER;
+            }
+        }
+    }
+
+    /** Left column of river k in row r, or -1 if that river lies outside the world. */
+    int riverCol(int k, int r, int spacing, int cols) {
+        int lo = k * spacing + 1, hi = Math.min(k * spacing + spacing, cols) - RIVER_WIDTH - 1;
+        if (k < 0 || hi < lo) return -1;
+        double n = 0.75 * noise(k, r, MEANDER_ROWS, 0) + 0.25 * noise(k, r, WIGGLE_ROWS, 1); // 0..1
+        int amplitude = Math.max(1, spacing / 5);
+        int col = k * spacing + spacing * 7 / 20 + (int) Math.round((2 * n - 1) * amplitude);
+        return Math.max(lo, Math.min(hi, col));
+    }
+
+    // smooth 1D value noise in [0, 1): hashed lattice values every `wave` rows, smoothstep in between
+    private double noise(int k, int r, int wave, int octave) {
+        int cell = Math.floorDiv(r, wave);
+        double t = (r - (double) cell * wave) / wave;
+        t = t * t * (3 - 2 * t);
+        double a = unit(k, cell, octave), b = unit(k, cell + 1, octave);
+        return a + (b - a) * t;
+    }
+
+    private double unit(int k, int cell, int octave) {
+        long h = mix(seed ^ mix(((long) k << 40) ^ ((long) octave << 32) ^ (cell & 0xffffffffL)));
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    // splitmix64 finaliser
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}